@@ -0,0 +1,115 @@
+package dungeon.dungeonmaker.benchmarks;
+
+import dungeon.dungeonmaker.GridDungeon;
+import dungeon.dungeonmaker.TileMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each phase of GridDungeon generation, and all of them
+ * together, on large maps. Run with -prof gc to get allocation rates.
+ * <p>
+ * Every size comes with a section grid that keeps sections about 40 tiles
+ * across, so bigger maps get more rooms and more corridors to route, as
+ * they would in use. A call here takes milliseconds, long enough for the
+ * per-invocation setup of the phase benchmarks to be timed reliably;
+ * small maps are measured in batches by SmallMapBenchmark instead.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+    /**
+     * A dungeon of the benchmarked size that moves
+     * to a new seed whenever a phase needs a fresh layout.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        // Map size / section grid
+        @Param({"1024x1024/25x25", "4096x4096/100x100"})
+        public String layout;
+
+        GridDungeon dungeon;
+        private long seed;
+
+        @Setup(Level.Trial)
+        public void createDungeon() {
+            dungeon = create(layout, seed);
+        }
+
+        void nextSeed() {
+            dungeon.setSeed(++seed);
+        }
+    }
+
+    /**
+     * A freshly initialized map, ready for createRooms.
+     */
+    @State(Scope.Thread)
+    public static class MapReady extends Fresh {
+        @Setup(Level.Invocation)
+        public void prepare() {
+            nextSeed();
+            dungeon.initMap();
+        }
+    }
+
+    /**
+     * A map with its rooms placed, ready for connectRooms.
+     */
+    @State(Scope.Thread)
+    public static class RoomsReady extends Fresh {
+        @Setup(Level.Invocation)
+        public void prepare() {
+            nextSeed();
+            dungeon.initMap();
+            dungeon.createRooms();
+        }
+    }
+
+    /**
+     * @param layout the map size and section grid, e.g. 1024x1024/25x25
+     * @param seed the seed to generate from
+     * @return a dungeon of that layout
+     */
+    static GridDungeon create(String layout, long seed) {
+        String[] parts = layout.split("/");
+        String[] size = parts[0].split("x");
+        String[] sections = parts[1].split("x");
+        return new GridDungeon(
+                Integer.parseInt(size[0]),
+                Integer.parseInt(size[1]),
+                Integer.parseInt(sections[0]),
+                Integer.parseInt(sections[1]),
+                seed);
+    }
+
+    @Benchmark
+    public TileMap initMap(Fresh state) {
+        state.dungeon.initMap();
+        return state.dungeon.getTileMap();
+    }
+
+    @Benchmark
+    public TileMap createRooms(MapReady state) {
+        state.dungeon.createRooms();
+        return state.dungeon.getTileMap();
+    }
+
+    @Benchmark
+    public TileMap connectRooms(RoomsReady state) {
+        state.dungeon.connectRooms();
+        return state.dungeon.getTileMap();
+    }
+
+    @Benchmark
+    public TileMap generate(Fresh state) {
+        state.nextSeed();
+        state.dungeon.generate();
+        return state.dungeon.getTileMap();
+    }
+}
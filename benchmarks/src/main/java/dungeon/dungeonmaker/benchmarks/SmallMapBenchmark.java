@@ -0,0 +1,116 @@
+package dungeon.dungeonmaker.benchmarks;
+
+import dungeon.dungeonmaker.GridDungeon;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each phase of GridDungeon generation on small maps, where a
+ * single call takes microseconds. Timing such a call after a setup of its
+ * own would mostly measure the timer, so each invocation runs the phase
+ * on a whole batch of dungeons prepared beforehand, and the score is per
+ * dungeon.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(SmallMapBenchmark.BATCH)
+public class SmallMapBenchmark {
+
+    // static final variables
+    static final int BATCH = 128;
+
+    /**
+     * A batch of dungeons of the benchmarked size that move
+     * to new seeds whenever a phase needs fresh layouts.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        // Map size / section grid
+        @Param({"60x30/4x2", "256x128/16x8"})
+        public String layout;
+
+        GridDungeon[] dungeons;
+        private long seed;
+
+        @Setup(Level.Trial)
+        public void createDungeons() {
+            dungeons = new GridDungeon[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                dungeons[i] = GenerationBenchmark.create(layout, seed++);
+            }
+        }
+
+        void nextSeeds() {
+            for (GridDungeon dungeon : dungeons) {
+                dungeon.setSeed(++seed);
+            }
+        }
+    }
+
+    /**
+     * Freshly initialized maps, ready for createRooms.
+     */
+    @State(Scope.Thread)
+    public static class MapReady extends Fresh {
+        @Setup(Level.Invocation)
+        public void prepare() {
+            nextSeeds();
+            for (GridDungeon dungeon : dungeons) {
+                dungeon.initMap();
+            }
+        }
+    }
+
+    /**
+     * Maps with their rooms placed, ready for connectRooms.
+     */
+    @State(Scope.Thread)
+    public static class RoomsReady extends Fresh {
+        @Setup(Level.Invocation)
+        public void prepare() {
+            nextSeeds();
+            for (GridDungeon dungeon : dungeons) {
+                dungeon.initMap();
+                dungeon.createRooms();
+            }
+        }
+    }
+
+    @Benchmark
+    public void initMap(Fresh state, Blackhole blackhole) {
+        for (GridDungeon dungeon : state.dungeons) {
+            dungeon.initMap();
+            blackhole.consume(dungeon.getTileMap());
+        }
+    }
+
+    @Benchmark
+    public void createRooms(MapReady state, Blackhole blackhole) {
+        for (GridDungeon dungeon : state.dungeons) {
+            dungeon.createRooms();
+            blackhole.consume(dungeon.getTileMap());
+        }
+    }
+
+    @Benchmark
+    public void connectRooms(RoomsReady state, Blackhole blackhole) {
+        for (GridDungeon dungeon : state.dungeons) {
+            dungeon.connectRooms();
+            blackhole.consume(dungeon.getTileMap());
+        }
+    }
+
+    @Benchmark
+    public void generate(Fresh state, Blackhole blackhole) {
+        state.nextSeeds();
+        for (GridDungeon dungeon : state.dungeons) {
+            dungeon.generate();
+            blackhole.consume(dungeon.getTileMap());
+        }
+    }
+}
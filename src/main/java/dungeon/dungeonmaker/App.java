@@ -15,6 +15,8 @@ public class App extends Application {
 
     @Override
     public void start(Stage stage) throws IOException {
+        GenerationMetrics.getDefault().register();
+
         FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource("rootpane.fxml"));
         Scene scene = new Scene(fxmlLoader.load(),1200,675);
         String css = App.class.getResource("stylesheet.css").toExternalForm();
@@ -0,0 +1,140 @@
+package dungeon.dungeonmaker;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Generates large batches of dungeons across all cores.
+ * A batch is a range of consecutive seeds; the range is split between the
+ * threads of a fork-join pool, and every finished dungeon is handed to a
+ * consumer as soon as it is done instead of being collected.
+ * <p>
+ * Every dungeon is checked for unreachable rooms, and regenerated from a
+ * derived seed up to a retry budget, so a dungeon's snapshot may carry a
+ * different seed than the one it was started from.
+ */
+public class BatchGenerator implements AutoCloseable {
+
+    // Seeds per task once a range can no longer be split
+    private static final int MIN_SEEDS_PER_TASK = 4;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    // Instance variables
+    private final ForkJoinPool pool;
+    private final int maxRetries;
+
+    /**
+     * Constructor to instantiate a BatchGenerator using every core.
+     */
+    public BatchGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor to instantiate a BatchGenerator with the default retry budget.
+     * @param parallelism the number of threads to generate on
+     */
+    public BatchGenerator(int parallelism) {
+        this(parallelism, DEFAULT_MAX_RETRIES);
+    }
+
+    /**
+     * Constructor to instantiate a new BatchGenerator
+     * @param parallelism the number of threads to generate on
+     * @param maxRetries the most times to regenerate a dungeon with unreachable rooms
+     */
+    public BatchGenerator(int parallelism, int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Negative retry budget: " + maxRetries);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Generates one dungeon per seed in [firstSeed, firstSeed + count),
+     * blocking until all of them have been passed to the consumer.
+     * The consumer is called concurrently from the pool's threads,
+     * and in no particular order, so it must be thread-safe.
+     * @param parameters the parameters every dungeon is generated with
+     * @param firstSeed the first seed of the range
+     * @param count the number of dungeons to generate
+     * @param consumer receives each finished dungeon
+     */
+    public void generate(DungeonParameters parameters, long firstSeed, int count,
+                         Consumer<DungeonSnapshot> consumer) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative dungeon count: " + count);
+        }
+        // Leave a few tasks per thread so idle threads can steal work
+        int threshold = Math.max(MIN_SEEDS_PER_TASK,
+                count / (pool.getParallelism() * 8));
+        pool.invoke(new GenerateTask(parameters, firstSeed, count, threshold, maxRetries, consumer));
+    }
+
+    /**
+     * @return the most times a dungeon with unreachable rooms is regenerated
+     */
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * @return the number of threads dungeons are generated on
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Generates a range of seeds, splitting it in half until it is small
+     * enough, then generating the range into a single reused GridDungeon.
+     */
+    private static class GenerateTask extends RecursiveAction {
+        private final DungeonParameters parameters;
+        private final long firstSeed;
+        private final int count;
+        private final int threshold;
+        private final int maxRetries;
+        private final Consumer<DungeonSnapshot> consumer;
+
+        GenerateTask(DungeonParameters parameters, long firstSeed, int count,
+                     int threshold, int maxRetries, Consumer<DungeonSnapshot> consumer) {
+            this.parameters = parameters;
+            this.firstSeed = firstSeed;
+            this.count = count;
+            this.threshold = threshold;
+            this.maxRetries = maxRetries;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (count > threshold) {
+                int half = count / 2;
+                invokeAll(
+                        new GenerateTask(parameters, firstSeed, half, threshold, maxRetries, consumer),
+                        new GenerateTask(parameters, firstSeed + half, count - half,
+                                threshold, maxRetries, consumer));
+                return;
+            }
+            if (count == 0) {
+                return;
+            }
+
+            // One dungeon per task, so its tiles and corridor buffers are reused
+            GridDungeon dungeon = parameters.newDungeon(firstSeed);
+            for (int i = 0; i < count; i++) {
+                dungeon.setSeed(firstSeed + i);
+                dungeon.generateConnected(maxRetries);
+                consumer.accept(dungeon.snapshot());
+            }
+        }
+    }
+}
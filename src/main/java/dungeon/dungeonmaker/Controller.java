@@ -2,95 +2,223 @@ package dungeon.dungeonmaker;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Pane;
-import javafx.scene.shape.Rectangle;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Controller class handling input to the root level GUI.
+ * Generation runs on a background thread, always into a dungeon of its own;
+ * a new click cancels the generation in progress, and results of superseded
+ * clicks are dropped.
  * @author bainrow
  */
 public class Controller {
 
     // static final variables
     public static final int DUNGEON_SIZE_X = 900;
+    public static final int DUNGEON_SIZE_Y = 450;
+    public static final int MAP_SIZE_X = 60;
+    public static final int MAP_SIZE_Y = 30;
+    private static final double ZOOM_STEP = 1.25;
 
     // Instance variables
-    private final Dungeon dungeon;
+    private GridDungeon dungeon;
+    private DungeonSnapshot shownDungeon;
+    private GenerationTask currentTask;
+    private DungeonRenderer renderer;
+    private final ItemPlacer itemPlacer = new ItemPlacer();
+    private final DungeonPipeline roomStages = new DungeonPipeline()
+            .addStage("Clearing map", DungeonStage.initMap())
+            .addStage("Placing rooms", DungeonStage.createRooms());
+    private final DungeonPipeline corridorStages = new DungeonPipeline()
+            .addStage("Routing corridors", DungeonStage.connectRooms());
+    private final DungeonPipeline allStages = DungeonPipeline.standard();
+    private double dragX;
+    private double dragY;
+    private final SplittableRandom seeds = new SplittableRandom();
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "dungeon-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @FXML
     private Pane dungeonPane;
 
+    @FXML
+    private Label feedbackLabel;
+
+    @FXML
+    private ProgressBar progressBar;
+
     /**
      * Controller constructor that instantiates a dungeon
      * on program start.
      */
     public Controller() {
-        this.dungeon = new GridDungeon(dungeonPane,60,30);
+        this.dungeon = new GridDungeon(MAP_SIZE_X, MAP_SIZE_Y);
+        this.shownDungeon = dungeon.snapshot();
+    }
+
+    /**
+     * Adds the canvas the dungeon is drawn on once the FXML is loaded.
+     * Scrolling zooms the view, dragging pans it, and clicking a room regenerates it.
+     */
+    @FXML
+    public void initialize() {
+        Canvas canvas = new Canvas(DUNGEON_SIZE_X, DUNGEON_SIZE_Y);
+        dungeonPane.getChildren().add(canvas);
+        renderer = new DungeonRenderer(canvas);
+        canvas.setOnMouseClicked(this::regenerateRoomAt);
+        canvas.setOnScroll(this::zoomAt);
+        canvas.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        canvas.setOnMouseDragged(this::panTo);
+    }
+
+    /**
+     * Zooms the view in or out around the mouse.
+     * @param e the scroll over the dungeon canvas
+     */
+    private void zoomAt(ScrollEvent e) {
+        if (e.getDeltaY() == 0) {
+            return;
+        }
+        renderer.zoom(e.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX(), e.getY());
+        showGrid();
+    }
+
+    /**
+     * Pans the view along with the mouse.
+     * @param e the drag over the dungeon canvas
+     */
+    private void panTo(MouseEvent e) {
+        renderer.pan(e.getX() - dragX, e.getY() - dragY);
+        dragX = e.getX();
+        dragY = e.getY();
+        showGrid();
+    }
+
+    /**
+     * Regenerates the room under the mouse, redrawing only what changed.
+     * Ignored while a generation is running, as that owns the dungeon.
+     * @param e the click on the dungeon canvas
+     */
+    private void regenerateRoomAt(MouseEvent e) {
+        // The end of a drag is not a click
+        if (isGenerating() || !e.isStillSincePress()) {
+            return;
+        }
+        int section = dungeon.getSectionAt(
+                (int) Math.floor(renderer.toTileX(e.getX())),
+                (int) Math.floor(renderer.toTileY(e.getY())));
+        if (section < 0 || !dungeon.getDungeonRooms()[section].containsRoom()) {
+            return;
+        }
+        TileChanges changes = dungeon.regenerateRoom(section);
+        shownDungeon = dungeon.snapshot();
+        // Items placed in the old room may now be inside a wall
+        renderer.setItems(null);
+        renderer.render(shownDungeon, changes);
     }
 
     /**
      * Shows the current tileMap of the dungeon on the GUI.
      */
     public void showGrid() {
-        clearGrid();
-        System.out.println("Showing grid...");
-        DungeonTile[][] tileMap = dungeon.getTileMap();
-
-        // render rooms
-        for (DungeonTile[] tiles : tileMap) {
-            for (DungeonTile tile : tiles) {
-                Rectangle currTile = tile.getSquare();
-                dungeonPane.getChildren().add(currTile);
-            }
-        }
+        renderer.render(shownDungeon);
     }
 
     /**
-     * Generates all the rooms in the dungeon.
+     * Generates all the rooms in a new dungeon.
      */
     public void generateRooms() {
-        System.out.println("Generating rooms...");
-        GridDungeon gridDungeon = (GridDungeon) this.dungeon;
-        gridDungeon.initMap();
-        gridDungeon.createRooms();
-        showGrid();
+        GridDungeon next = new GridDungeon(MAP_SIZE_X, MAP_SIZE_Y, seeds.nextLong());
+        startGeneration(new GenerationTask(next, roomStages));
     }
 
     /**
      * Generates all the corridors of the dungeon.
+     * They are routed in a copy, which only replaces the dungeon once done,
+     * so a cancelled run leaves the dungeon shown as it was.
      */
     public void generateCorridor() {
-        System.out.println("Generating corridors...");
-        GridDungeon gridDungeon = (GridDungeon) this.dungeon;
-        gridDungeon.connectRooms();
-        showGrid();
+        startGeneration(new GenerationTask(new GridDungeon(dungeon), corridorStages));
     }
 
+    /**
+     * Places items in the rooms of the dungeon shown.
+     * @param e the click on the items button
+     */
     public void generateItems(ActionEvent e) {
-        System.out.println("Generating items...");
+        if (isGenerating()) {
+            return;
+        }
+        ItemLayout items = itemPlacer.place(shownDungeon);
+        // The label follows the last generation's messages until told otherwise
+        feedbackLabel.textProperty().unbind();
+        feedbackLabel.setText("Placed " + items.size() + " items");
+        renderer.setItems(items);
+        showGrid();
     }
 
     /**
-     * Generates rooms, corridors in dungeon.
+     * Generates rooms, corridors in a new dungeon.
      */
     public void generateAll() {
-        generateRooms();
-        generateCorridor();
-        showGrid();
+        GridDungeon next = new GridDungeon(MAP_SIZE_X, MAP_SIZE_Y, seeds.nextLong());
+        startGeneration(new GenerationTask(next, allStages));
     }
 
     /**
-     * Re-initializes the dungeon and clears the GUI.
+     * Clears the dungeon tiles from the GUI.
      */
     public void clearGrid() {
-        System.out.println("Clearing grid...");
-        DungeonTile[][] tileMap = dungeon.getTileMap();
+        cancelGeneration();
+        renderer.clear();
+    }
 
-        // render rooms
-        for (DungeonTile[] tiles : tileMap) {
-            for (DungeonTile tile : tiles) {
-                dungeonPane.getChildren().remove(tile.getSquare());
+    /**
+     * Cancels any generation in progress, then runs the task in the background.
+     * Its result is only shown if no other generation was started since.
+     * @param task the generation to run
+     */
+    private void startGeneration(GenerationTask task) {
+        cancelGeneration();
+        currentTask = task;
+        progressBar.progressProperty().bind(task.progressProperty());
+        feedbackLabel.textProperty().bind(task.messageProperty());
+        task.setOnSucceeded(e -> {
+            // A superseded task may still finish before noticing its cancellation
+            if (task != currentTask) {
+                return;
             }
+            dungeon = task.getDungeon();
+            shownDungeon = task.getValue();
+            renderer.setItems(null);
+            showGrid();
+        });
+        generator.execute(task);
+    }
+
+    private void cancelGeneration() {
+        if (currentTask != null) {
+            currentTask.cancel(true);
+            currentTask = null;
         }
     }
+
+    private boolean isGenerating() {
+        return currentTask != null && !currentTask.isDone();
+    }
 }
@@ -0,0 +1,315 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+
+/**
+ * A* search that routes and carves corridors through a TileMap.
+ * A search is confined to a rectangle of the map, its window. Cells are
+ * encoded as ints relative to the window (y * window width + x) and all
+ * search state lives in scratch buffers sized to the window, not the map,
+ * and reused between searches. Instead of clearing the buffers before
+ * every search, each cell is stamped with the search it was last written
+ * by, so a new search only has to bump the stamp. Buffers grown for an
+ * unusually large window are dropped once its search is done.
+ * <p>
+ * By default every tile costs the same to route through, so a corridor
+ * is a shortest path that only depends on its two ends. Making walls
+ * dearer than floor has a corridor join up with rooms and corridors
+ * carved before it instead of running alongside them, at the price of a
+ * slower search, as the search spreads over the open floor near the
+ * corridor before it commits to carving. Each corridor is a search of
+ * its own, kept inside the two sections it joins; one search reaching
+ * several targets would have to span every section around a room, which
+ * the parallel waves and regenerateRoom rely on it not doing. A router
+ * holds the scratch buffers for one search at a time, so a thread
+ * routing corridors needs a router of its own.
+ */
+class CorridorRouter {
+
+    // Direction vectors
+    private static final int[] D_X = { 0, 1, 0, -1 };
+    private static final int[] D_Y = { -1, 0, 1, 0 };
+
+    private static final int NO_PARENT = -1;
+    private static final int INITIAL_HEAP_CAPACITY = 256;
+    private static final int WALL = TileType.WALL.ordinal();
+
+    // Default costs of stepping onto a tile
+    static final int DEFAULT_WALL_COST = 1;
+    static final int DEFAULT_FLOOR_COST = 1;
+    private static final int MAX_COST = 1 << 10;
+    // f = g + h is at most twice the tiles searched times the dearer cost,
+    // and must fit an int as it is packed into the high half of a heap key
+    private static final long MAX_WORST_COST = Integer.MAX_VALUE;
+    // Scratch grown past this many cells is not kept between searches
+    private static final int MAX_RETAINED_CELLS = 1 << 20;
+
+    // Costs of stepping onto a tile
+    private int wallCost = DEFAULT_WALL_COST;
+    private int floorCost = DEFAULT_FLOOR_COST;
+
+    // Scratch buffers, indexed by cell of the window
+    private int[] gScore = new int[0];
+    private int[] parent = new int[0];
+    private int[] stamp = new int[0];
+    private int search;
+
+    // Binary min-heap of open cells, ordered by (f, h)
+    private long[] heapKeys = new long[INITIAL_HEAP_CAPACITY];
+    private int[] heapCells = new int[INITIAL_HEAP_CAPACITY];
+    private int heapSize;
+
+    private TileMap map;
+    private int mapWidth;
+
+    // Window of the current search
+    private int minX;
+    private int minY;
+    private int windowWidth;
+    private int windowHeight;
+
+    /**
+     * Sets the costs of stepping onto a wall tile, which gets carved,
+     * and onto a floor or center tile, which already is open.
+     * @param wallCost the cost of stepping onto a wall tile
+     * @param floorCost the cost of stepping onto a floor or center tile
+     */
+    void setCosts(int wallCost, int floorCost) {
+        if (wallCost <= 0 || floorCost <= 0 || wallCost > MAX_COST || floorCost > MAX_COST) {
+            throw new IllegalArgumentException("Corridor costs must be between 1 and " + MAX_COST
+                    + ": wall " + wallCost + ", floor " + floorCost);
+        }
+        this.wallCost = wallCost;
+        this.floorCost = floorCost;
+    }
+
+    int getWallCost() {
+        return wallCost;
+    }
+
+    int getFloorCost() {
+        return floorCost;
+    }
+
+    /**
+     * @return true if every tile costs the same, so a corridor only
+     *         depends on its two ends and not on what was carved before it
+     */
+    boolean hasUniformCost() {
+        return wallCost == floorCost;
+    }
+
+    /**
+     * Finds a cheapest corridor between two tiles anywhere on the map.
+     * @see #carve(TileMap, int, int, int, int, int, int, int, int)
+     */
+    int carve(TileMap map, int startX, int startY, int endX, int endY) {
+        return carve(map, startX, startY, endX, endY,
+                0, 0, map.getWidth() - 1, map.getHeight() - 1);
+    }
+
+    /**
+     * Finds a cheapest corridor between two tiles that stays inside the
+     * given bounds, and carves every wall tile along it into floor.
+     * Floor and center tiles are left untouched.
+     * @param map the map to route through and carve into
+     * @param startX the x coordinate of the first tile
+     * @param startY the y coordinate of the first tile
+     * @param endX the x coordinate of the last tile
+     * @param endY the y coordinate of the last tile
+     * @param minX the smallest x coordinate the corridor may use
+     * @param minY the smallest y coordinate the corridor may use
+     * @param maxX the largest x coordinate the corridor may use
+     * @param maxY the largest y coordinate the corridor may use
+     * @return the number of wall tiles that were carved
+     * @throws IllegalArgumentException if either end lies outside the bounds,
+     *         or the bounds hold so many tiles that a path cost at the
+     *         current costs could overflow an int
+     */
+    int carve(TileMap map, int startX, int startY, int endX, int endY,
+              int minX, int minY, int maxX, int maxY) {
+        int left = Math.max(0, minX);
+        int top = Math.max(0, minY);
+        int right = Math.min(map.getWidth() - 1, maxX);
+        int bottom = Math.min(map.getHeight() - 1, maxY);
+        if (startX < left || startY < top || startX > right || startY > bottom
+                || endX < left || endY < top || endX > right || endY > bottom) {
+            throw new IllegalArgumentException("Corridor from (" + startX + ", " + startY + ") to ("
+                    + endX + ", " + endY + ") does not lie inside its bounds");
+        }
+        long tiles = (long) (right - left + 1) * (bottom - top + 1);
+        if (2 * tiles * Math.max(wallCost, floorCost) > MAX_WORST_COST) {
+            throw new IllegalArgumentException("Cannot route through " + tiles + " tiles at a cost of "
+                    + Math.max(wallCost, floorCost) + " per tile without overflowing the path cost");
+        }
+        this.map = map;
+        this.mapWidth = map.getWidth();
+        this.minX = left;
+        this.minY = top;
+        this.windowWidth = right - left + 1;
+        this.windowHeight = bottom - top + 1;
+        ensureCapacity((int) tiles);
+
+        int endCellX = endX - left;
+        int endCellY = endY - top;
+        boolean found = search((startY - top) * windowWidth + startX - left,
+                endCellY * windowWidth + endCellX, endCellX, endCellY);
+        this.map = null;
+
+        // Walk back from the end, carving as we go
+        int carved = 0;
+        if (found) {
+            for (int cell = endCellY * windowWidth + endCellX; cell != NO_PARENT; cell = parent[cell]) {
+                int x = left + cell % windowWidth;
+                int y = top + cell / windowWidth;
+                if (map.getType(x, y) == TileType.WALL) {
+                    map.setType(x, y, TileType.FLOOR);
+                    carved++;
+                }
+            }
+        }
+        if (tiles > MAX_RETAINED_CELLS) {
+            releaseScratch();
+        }
+        return carved;
+    }
+
+    /**
+     * Runs A* from start to end. The heuristic is the Manhattan distance
+     * priced at the cheaper of the two costs, which never overestimates,
+     * so the corridor found is a cheapest one. With equal costs the
+     * heuristic is exact on open ground and the search heads straight
+     * for the end; with dearer walls it also explores the cheap floor
+     * that a cheaper corridor might run along.
+     * On success the parent buffer holds the path from end back to start.
+     */
+    private boolean search(int start, int end, int endX, int endY) {
+        nextSearch();
+        heapSize = 0;
+
+        visit(start, 0, NO_PARENT);
+        push(start, heuristic(start, endX, endY), heuristic(start, endX, endY));
+
+        while (heapSize > 0) {
+            long key = heapKeys[0];
+            int cell = pop();
+            if (cell == end) {
+                return true;
+            }
+
+            // Skip entries made stale by a cheaper path found later
+            int h = (int) key;
+            int g = gScore[cell];
+            if ((int) (key >>> 32) != g + h) {
+                continue;
+            }
+
+            int x = cell % windowWidth;
+            int y = cell / windowWidth;
+            for (int i = 0; i < 4; i++) {
+                int adjX = x + D_X[i];
+                int adjY = y + D_Y[i];
+                if (adjX < 0 || adjY < 0 || adjX >= windowWidth || adjY >= windowHeight) {
+                    continue;
+                }
+                int adj = adjY * windowWidth + adjX;
+                int tile = (minY + adjY) * mapWidth + minX + adjX;
+                int adjG = g + (map.ordinalAt(tile) == WALL ? wallCost : floorCost);
+                if (stamp[adj] != search || adjG < gScore[adj]) {
+                    visit(adj, adjG, cell);
+                    int adjH = heuristic(adj, endX, endY);
+                    push(adj, adjG + adjH, adjH);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void visit(int cell, int g, int from) {
+        stamp[cell] = search;
+        gScore[cell] = g;
+        parent[cell] = from;
+    }
+
+    private int heuristic(int cell, int endX, int endY) {
+        int distance = Math.abs(cell % windowWidth - endX) + Math.abs(cell / windowWidth - endY);
+        return distance * Math.min(wallCost, floorCost);
+    }
+
+    /**
+     * Starts a new search, only clearing the stamps when the counter wraps.
+     */
+    private void nextSearch() {
+        search++;
+        if (search == 0) {
+            Arrays.fill(stamp, 0);
+            search = 1;
+        }
+    }
+
+    /**
+     * Grows the scratch buffers if the window is larger than any seen before.
+     */
+    private void ensureCapacity(int cells) {
+        if (stamp.length < cells) {
+            gScore = new int[cells];
+            parent = new int[cells];
+            stamp = new int[cells];
+            search = 0;
+        }
+    }
+
+    private void releaseScratch() {
+        gScore = new int[0];
+        parent = new int[0];
+        stamp = new int[0];
+        search = 0;
+        heapKeys = new long[INITIAL_HEAP_CAPACITY];
+        heapCells = new int[INITIAL_HEAP_CAPACITY];
+    }
+
+    // Ties on f are broken towards the smaller h, i.e. the cell nearer the goal
+    private void push(int cell, int f, int h) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+        }
+        long key = ((long) f << 32) | h;
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (heapKeys[up] <= key) {
+                break;
+            }
+            heapKeys[i] = heapKeys[up];
+            heapCells[i] = heapCells[up];
+            i = up;
+        }
+        heapKeys[i] = key;
+        heapCells[i] = cell;
+    }
+
+    private int pop() {
+        int top = heapCells[0];
+        heapSize--;
+        long key = heapKeys[heapSize];
+        int cell = heapCells[heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (key <= heapKeys[child]) {
+                break;
+            }
+            heapKeys[i] = heapKeys[child];
+            heapCells[i] = heapCells[child];
+            i = child;
+        }
+        heapKeys[i] = key;
+        heapCells[i] = cell;
+        return top;
+    }
+}
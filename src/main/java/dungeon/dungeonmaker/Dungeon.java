@@ -1,16 +1,13 @@
 package dungeon.dungeonmaker;
 
-import javafx.scene.layout.Pane;
-
 abstract class Dungeon {
 
-    DungeonTile[][] tileMap;
-    Pane dungeonPane;
-    int mapSizeX, mapSizeY, tileSize;
+    TileMap tileMap;
+    int mapSizeX, mapSizeY;
 
     abstract void initMap();
 
-    public DungeonTile[][] getTileMap() {
+    public TileMap getTileMap() {
         return this.tileMap;
     }
 }
@@ -0,0 +1,248 @@
+package dungeon.dungeonmaker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of generated dungeons, keyed by their parameters and seed.
+ * Dungeons are kept in the binary dungeon format, and the cache is bounded
+ * by the total size of those encodings, evicting the least recently used
+ * dungeon first. Safe to share between threads; dungeons are generated
+ * outside the lock, so a miss never holds up hits on other keys.
+ * <p>
+ * Every encoding in the cache is known to be valid, as it was either
+ * made by DungeonFormat or checked on the way in by put, so dungeons
+ * are decoded from it without checking its rows again.
+ */
+public class DungeonCache {
+
+    // static final variables
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    // Rough cost of an entry besides its encoding: key, map entry, array header
+    static final int ENTRY_OVERHEAD = 96;
+
+    // Instance variables
+    private final long maxBytes;
+    private final LinkedHashMap<Key, byte[]> dungeons;
+    private long sizeBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor to instantiate a DungeonCache holding up to 64 MiB of dungeons.
+     */
+    public DungeonCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor to instantiate a new DungeonCache
+     * @param maxBytes the most bytes of encoded dungeons to keep
+     */
+    public DungeonCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        // Access ordered, so the eldest entry is the least recently used dungeon
+        this.dungeons = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the encoded dungeon, generating and caching it on a miss.
+     * The returned array is shared with the cache and must not be modified.
+     * @param parameters the parameters the dungeon is generated with
+     * @param seed the seed the dungeon is generated from
+     * @return the dungeon in the binary dungeon format
+     */
+    public byte[] getEncoded(DungeonParameters parameters, long seed) {
+        byte[] encoded = getIfPresent(parameters, seed);
+        if (encoded == null) {
+            encoded = generate(parameters, seed);
+            putValid(parameters, seed, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Generates a dungeon the way BatchGenerator and DungeonCli do, retrying
+     * up to BatchGenerator.DEFAULT_MAX_RETRIES times while a room cannot be
+     * reached, so a cached dungeon is the one they give for the same seed.
+     * @param parameters the parameters the dungeon is generated with
+     * @param seed the seed the dungeon is generated from
+     * @return the dungeon in the binary dungeon format
+     */
+    static byte[] generate(DungeonParameters parameters, long seed) {
+        GridDungeon dungeon = parameters.newDungeon(seed);
+        dungeon.generateConnected(BatchGenerator.DEFAULT_MAX_RETRIES);
+        return DungeonFormat.encode(dungeon.snapshot());
+    }
+
+    /**
+     * Returns the dungeon, generating and caching it on a miss.
+     * @param parameters the parameters the dungeon is generated with
+     * @param seed the seed the dungeon is generated from
+     * @return the dungeon, decoded from the cache
+     */
+    public DungeonSnapshot get(DungeonParameters parameters, long seed) {
+        try {
+            return DungeonReader.wrapValid(getEncoded(parameters, seed)).toSnapshot();
+        } catch (IOException e) {
+            // Rows known to be valid are never checked, so never fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Looks up a dungeon without generating it, counting a hit or a miss.
+     * The returned array is shared with the cache and must not be modified.
+     * @param parameters the parameters the dungeon is generated with
+     * @param seed the seed the dungeon is generated from
+     * @return the dungeon in the binary dungeon format, or null if not cached
+     */
+    public byte[] getIfPresent(DungeonParameters parameters, long seed) {
+        byte[] encoded;
+        synchronized (this) {
+            encoded = dungeons.get(new Key(parameters, seed));
+        }
+        if (encoded == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return encoded;
+    }
+
+    /**
+     * Caches an encoded dungeon, evicting the least recently used ones
+     * until the cache fits. A dungeon larger than the whole cache is not kept.
+     * The encoding is checked in full first, so what the cache hands out
+     * is always valid.
+     * @param parameters the parameters the dungeon was generated with
+     * @param seed the seed the dungeon was generated from
+     * @param encoded the dungeon in the binary dungeon format
+     * @throws IllegalArgumentException if the bytes are not a valid dungeon
+     */
+    public void put(DungeonParameters parameters, long seed, byte[] encoded) {
+        try {
+            DungeonReader.wrap(encoded).checkRows();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a valid dungeon encoding: " + e.getMessage(), e);
+        }
+        putValid(parameters, seed, encoded);
+    }
+
+    /**
+     * Caches an encoding made by DungeonFormat without checking it.
+     * @param parameters the parameters the dungeon was generated with
+     * @param seed the seed the dungeon was generated from
+     * @param encoded the dungeon in the binary dungeon format, known to be valid
+     */
+    synchronized void putValid(DungeonParameters parameters, long seed, byte[] encoded) {
+        long size = sizeOf(encoded);
+        if (size > maxBytes) {
+            return;
+        }
+        byte[] previous = dungeons.put(new Key(parameters, seed), encoded);
+        if (previous != null) {
+            sizeBytes -= sizeOf(previous);
+        }
+        sizeBytes += size;
+
+        Iterator<byte[]> eldest = dungeons.values().iterator();
+        while (sizeBytes > maxBytes) {
+            sizeBytes -= sizeOf(eldest.next());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes every dungeon from the cache. The statistics are kept.
+     */
+    public synchronized void clear() {
+        dungeons.clear();
+        sizeBytes = 0;
+    }
+
+    private static long sizeOf(byte[] encoded) {
+        return encoded.length + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * @return the most bytes the cache holds
+     */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * @return the bytes the cached dungeons take up, including overhead
+     */
+    public synchronized long getSizeBytes() {
+        return this.sizeBytes;
+    }
+
+    /**
+     * @return the number of cached dungeons
+     */
+    public synchronized int getEntryCount() {
+        return dungeons.size();
+    }
+
+    /**
+     * @return the number of lookups that found their dungeon
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find their dungeon
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of dungeons evicted to make room
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The full tuple a dungeon is generated from.
+     */
+    private static final class Key {
+        private final DungeonParameters parameters;
+        private final long seed;
+
+        Key(DungeonParameters parameters, long seed) {
+            this.parameters = Objects.requireNonNull(parameters);
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return seed == other.seed && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * parameters.hashCode() + Long.hashCode(seed);
+        }
+    }
+}
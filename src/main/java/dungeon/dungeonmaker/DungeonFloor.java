@@ -0,0 +1,83 @@
+package dungeon.dungeonmaker;
+
+/**
+ * One floor of a MultiFloorDungeon: the dungeon itself, its path queries,
+ * and where its stairs are.
+ * <p>
+ * Stairs up lead to the floor above and are in the starting room, where
+ * the player arrives coming down. Stairs down lead to the starting room of
+ * the floor below and are in the room walking furthest from the stairs up,
+ * so each floor has to be crossed. Both only depend on the floor itself,
+ * so any floor can be generated without the floors around it.
+ */
+public final class DungeonFloor {
+
+    // Instance variables
+    private final int index;
+    private final DungeonSnapshot dungeon;
+    private final DungeonPaths paths;
+    private final int upStairsRoom;
+    private final int downStairsRoom;
+
+    /**
+     * Constructor to instantiate a new DungeonFloor, placing its stairs.
+     * @param index the depth of the floor, 0 for the top floor
+     * @param dungeon the finished dungeon of the floor
+     */
+    DungeonFloor(int index, DungeonSnapshot dungeon) {
+        this.index = index;
+        this.dungeon = dungeon;
+        this.paths = new DungeonPaths(dungeon);
+        this.upStairsRoom = dungeon.getStartingRoomIndex();
+
+        int furthest = upStairsRoom;
+        int furthestDistance = 0;
+        for (int i = 0; i < dungeon.getRoomCount(); i++) {
+            DungeonRoom room = dungeon.getRoom(i);
+            if (!room.containsRoom()) {
+                continue;
+            }
+            int distance = paths.distanceFromStart(room.getCenterX(), room.getCenterY());
+            if (distance > furthestDistance) {
+                furthest = i;
+                furthestDistance = distance;
+            }
+        }
+        this.downStairsRoom = furthest;
+    }
+
+    /**
+     * @return the depth of the floor, 0 for the top floor
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the finished dungeon of the floor
+     */
+    public DungeonSnapshot getDungeon() {
+        return dungeon;
+    }
+
+    /**
+     * @return path and distance queries on the floor
+     */
+    public DungeonPaths getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return the index of the room holding the stairs to the floor above
+     */
+    public int getUpStairsRoom() {
+        return upStairsRoom;
+    }
+
+    /**
+     * @return the index of the room holding the stairs to the floor below
+     */
+    public int getDownStairsRoom() {
+        return downStairsRoom;
+    }
+}
@@ -0,0 +1,119 @@
+package dungeon.dungeonmaker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes dungeons in the compact binary dungeon format.
+ * <p>
+ * All values are big-endian. A file is laid out as:
+ * <pre>
+ *   header     magic "DGNM", version (short), flags (short),
+ *              width, height (int), seed (long),
+ *              sectionsX, sectionsY, startingRoom, roomCount (int)
+ *   rooms      per room: containsRoom (byte),
+ *              centerX, centerY, originX, originY, width, height (int)
+ *   rowOffsets height + 1 ints, the offset of each row from the start of
+ *              the tile data, the last one being the length of the data
+ *   tiles      each row run-length encoded as (TileType ordinal byte,
+ *              run length varint) pairs
+ * </pre>
+ * The row offsets let a reader find any single tile by decoding one row.
+ */
+public final class DungeonFormat {
+
+    // static final variables
+    public static final int MAGIC = 0x44474E4D;
+    public static final short VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int ROOM_SIZE = 25;
+
+    private DungeonFormat() {
+    }
+
+    /**
+     * @param dungeon the dungeon to encode
+     * @return the dungeon in the binary dungeon format
+     */
+    public static byte[] encode(DungeonSnapshot dungeon) {
+        int width = dungeon.getWidth();
+        int height = dungeon.getHeight();
+        try {
+            // Encode the rows first, as their offsets come before them
+            ByteArrayOutputStream tiles = new ByteArrayOutputStream(height * 4);
+            int[] rowOffsets = new int[height + 1];
+            for (int y = 0; y < height; y++) {
+                rowOffsets[y] = tiles.size();
+                int x = 0;
+                while (x < width) {
+                    TileType type = dungeon.getType(x, y);
+                    int run = 1;
+                    while (x + run < width && dungeon.getType(x + run, y) == type) {
+                        run++;
+                    }
+                    tiles.write(type.ordinal());
+                    writeVarInt(tiles, run);
+                    x += run;
+                }
+            }
+            rowOffsets[height] = tiles.size();
+
+            int rooms = dungeon.getRoomCount();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                    HEADER_SIZE + rooms * ROOM_SIZE + rowOffsets.length * 4 + tiles.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeLong(dungeon.getSeed());
+            out.writeInt(dungeon.getSectionsX());
+            out.writeInt(dungeon.getSectionsY());
+            out.writeInt(dungeon.getStartingRoomIndex());
+            out.writeInt(rooms);
+            for (int i = 0; i < rooms; i++) {
+                DungeonRoom room = dungeon.getRoom(i);
+                out.writeBoolean(room.containsRoom());
+                out.writeInt(room.getCenterX());
+                out.writeInt(room.getCenterY());
+                out.writeInt(room.getOriginX());
+                out.writeInt(room.getOriginY());
+                out.writeInt(room.getWidth());
+                out.writeInt(room.getHeight());
+            }
+            for (int offset : rowOffsets) {
+                out.writeInt(offset);
+            }
+            tiles.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Only in-memory streams are written to
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the dungeon to a file in the binary dungeon format.
+     * @param dungeon the dungeon to write
+     * @param path the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void write(DungeonSnapshot dungeon, Path path) throws IOException {
+        Files.write(path, encode(dungeon));
+    }
+
+    // Seven bits per byte, high bit set on every byte but the last
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
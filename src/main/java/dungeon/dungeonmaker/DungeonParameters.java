@@ -0,0 +1,98 @@
+package dungeon.dungeonmaker;
+
+import java.util.Objects;
+
+/**
+ * The settings a GridDungeon is generated with, apart from its seed.
+ * Two dungeons with equal parameters and equal seeds are identical.
+ */
+public final class DungeonParameters {
+
+    // Instance variables
+    private final int width;
+    private final int height;
+    private final int sectionsX;
+    private final int sectionsY;
+
+    /**
+     * Constructor to instantiate a new DungeonParameters
+     * with the default 4x2 section layout.
+     * @param width the width of the dungeon
+     * @param height the height of the dungeon
+     */
+    public DungeonParameters(int width, int height) {
+        this(width, height, GridDungeon.DEFAULT_SECTIONS_X, GridDungeon.DEFAULT_SECTIONS_Y);
+    }
+
+    /**
+     * Constructor to instantiate a new DungeonParameters
+     * @param width the width of the dungeon
+     * @param height the height of the dungeon
+     * @param sectionsX the number of room sections across
+     * @param sectionsY the number of room sections down
+     */
+    public DungeonParameters(int width, int height, int sectionsX, int sectionsY) {
+        this.width = width;
+        this.height = height;
+        this.sectionsX = sectionsX;
+        this.sectionsY = sectionsY;
+    }
+
+    /**
+     * @return the width of the dungeon
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the dungeon
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of room sections across
+     */
+    public int getSectionsX() {
+        return sectionsX;
+    }
+
+    /**
+     * @return the number of room sections down
+     */
+    public int getSectionsY() {
+        return sectionsY;
+    }
+
+    /**
+     * @param seed the seed to generate from
+     * @return a new, not yet generated, dungeon with these parameters
+     */
+    public GridDungeon newDungeon(long seed) {
+        return new GridDungeon(width, height, sectionsX, sectionsY, seed);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DungeonParameters other)) {
+            return false;
+        }
+        return width == other.width && height == other.height
+                && sectionsX == other.sectionsX && sectionsY == other.sectionsY;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(width, height, sectionsX, sectionsY);
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + " in " + sectionsX + "x" + sectionsY + " sections";
+    }
+}
@@ -0,0 +1,893 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers path and distance queries on a finished dungeon.
+ * <p>
+ * Paths between two tiles are found hierarchically, HPA* style. Each room
+ * section is a cluster, and every opening in the border between two
+ * neighbouring sections is an entrance, with a node on each side of it.
+ * Up front, a breadth-first search inside each section measures how far
+ * apart its entrance nodes are, giving a small abstract graph, and the
+ * distance from a few landmark nodes to every node is stored. A query
+ * then only searches the sections holding its two ends, and runs A* over
+ * the abstract graph between them, guided by the landmarks, so it costs a
+ * couple of sections and a small part of the graph rather than the whole
+ * map. Such a path is walkable but not always shortest, as it crosses
+ * each border in the middle of the opening, so its length is an upper
+ * bound on the true distance. It is exact when the shortest path stays
+ * inside one section.
+ * <p>
+ * Distances to the starting room and to room centers come from full
+ * breadth-first distance fields instead, and are exact. A field is
+ * computed the first time its room is asked about and kept in a cache
+ * bounded by both a count and a total size, after which every question
+ * about that room is a single array lookup.
+ * <p>
+ * Cells are encoded as ints (y * width + x). Queries may be made from
+ * many threads at once. Each query borrows scratch buffers from a small
+ * pool and returns them when done, so threads hold none between queries.
+ */
+public final class DungeonPaths {
+
+    // static final variables
+    public static final int UNREACHABLE = -1;
+    public static final int DEFAULT_CACHED_FIELDS = 16;
+    // Most bytes of distance fields cached by default, however large the map
+    public static final long DEFAULT_FIELD_CACHE_BYTES = 64L << 20;
+    private static final int[] D_X = { 0, 1, 0, -1 };
+    private static final int[] D_Y = { -1, 0, 1, 0 };
+    private static final int WALL = TileType.WALL.ordinal();
+    private static final int NO_PARENT = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int LANDMARKS = 8;
+
+    // Instance variables
+    private final TileMap map;
+    private final int width;
+    private final int height;
+    private final int sectionsX;
+    private final int sectionsY;
+    private final int sectionWidth;
+    private final int sectionHeight;
+    private final DungeonRoom[] rooms;
+    private final int startingRoom;
+
+    // Abstract graph; nodes of section s are sectionNodes[sectionStart[s]] to
+    // sectionNodes[sectionStart[s + 1] - 1], edges of node n likewise
+    private final int[] nodeCells;
+    private final int[] sectionStart;
+    private final int[] sectionNodes;
+    private final int[] nodeSections;
+    private final int[] edgeStart;
+    private final int[] edgeTargets;
+    private final int[] edgeCosts;
+
+    // Distance from each landmark node to each node, landmarks to a node together
+    private final int landmarks;
+    private final int[] landmarkDistance;
+
+    // Idle scratch buffers, at most one per core kept
+    private final int maxIdleScratch = Runtime.getRuntime().availableProcessors();
+    private final Queue<Scratch> idleScratch = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleScratchCount = new AtomicInteger();
+    private final int maxSectionArea;
+    private final Map<Integer, int[]> fields;
+
+    /**
+     * Constructor to instantiate a new DungeonPaths with the default field
+     * cache, holding up to DEFAULT_CACHED_FIELDS fields but no more than fit
+     * in DEFAULT_FIELD_CACHE_BYTES, and always at least one.
+     * @param dungeon the dungeon to answer queries about
+     */
+    public DungeonPaths(DungeonSnapshot dungeon) {
+        this(dungeon, defaultCachedFields(dungeon.getWidth(), dungeon.getHeight()));
+    }
+
+    /**
+     * @param width the width of a map in tiles
+     * @param height the height of a map in tiles
+     * @return the number of fields the default cache holds for a map of that size
+     */
+    static int defaultCachedFields(int width, int height) {
+        long fieldBytes = (long) width * height * Integer.BYTES;
+        return (int) Math.max(1, Math.min(DEFAULT_CACHED_FIELDS, DEFAULT_FIELD_CACHE_BYTES / fieldBytes));
+    }
+
+    /**
+     * Constructor to instantiate a new DungeonPaths, building its abstract graph.
+     * @param dungeon the dungeon to answer queries about
+     * @param maxCachedFields the most distance fields kept at once
+     */
+    public DungeonPaths(DungeonSnapshot dungeon, int maxCachedFields) {
+        if (maxCachedFields <= 0) {
+            throw new IllegalArgumentException("Field cache size must be positive: " + maxCachedFields);
+        }
+        this.map = dungeon.getTileMap();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.sectionsX = dungeon.getSectionsX();
+        this.sectionsY = dungeon.getSectionsY();
+        this.sectionWidth = width / sectionsX;
+        this.sectionHeight = height / sectionsY;
+        this.rooms = new DungeonRoom[dungeon.getRoomCount()];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = dungeon.getRoom(i);
+        }
+        this.startingRoom = dungeon.getStartingRoomIndex();
+
+        this.fields = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > maxCachedFields;
+            }
+        };
+
+        // Find the entrances, joining the two sides of each with a single step
+        Graph graph = new Graph();
+        for (int sy = 0; sy < sectionsY; sy++) {
+            for (int sx = 0; sx < sectionsX; sx++) {
+                if (sx + 1 < sectionsX) {
+                    addEntrances(graph, (sx + 1) * sectionWidth - 1, sectionMinY(sy), 0, 1, sectionMaxY(sy));
+                }
+                if (sy + 1 < sectionsY) {
+                    addEntrances(graph, sectionMinX(sx), (sy + 1) * sectionHeight - 1, 1, 0, sectionMaxX(sx));
+                }
+            }
+        }
+        this.nodeCells = Arrays.copyOf(graph.nodeCells, graph.nodes);
+        this.landmarks = Math.min(LANDMARKS, graph.nodes);
+
+        // The last column and row of sections also take the margin of the map
+        this.maxSectionArea = (width - (sectionsX - 1) * sectionWidth)
+                * (height - (sectionsY - 1) * sectionHeight);
+
+        // Counting sort of the nodes by section
+        int sections = sectionsX * sectionsY;
+        this.sectionStart = new int[sections + 1];
+        this.nodeSections = new int[graph.nodes];
+        for (int n = 0; n < graph.nodes; n++) {
+            nodeSections[n] = sectionOf(nodeCells[n]);
+            sectionStart[nodeSections[n] + 1]++;
+        }
+        for (int s = 0; s < sections; s++) {
+            sectionStart[s + 1] += sectionStart[s];
+        }
+        this.sectionNodes = new int[graph.nodes];
+        int[] fill = Arrays.copyOf(sectionStart, sections);
+        for (int n = 0; n < graph.nodes; n++) {
+            sectionNodes[fill[nodeSections[n]]++] = n;
+        }
+
+        // Measure the distance between the entrances of each section
+        Scratch buffers = new Scratch(maxSectionArea, graph.nodes, landmarks);
+        for (int s = 0; s < sections; s++) {
+            for (int i = sectionStart[s]; i < sectionStart[s + 1]; i++) {
+                int from = sectionNodes[i];
+                searchSection(buffers, s, nodeCells[from]);
+                for (int j = sectionStart[s]; j < sectionStart[s + 1]; j++) {
+                    int distance = buffers.localDistance(nodeCells[sectionNodes[j]]);
+                    if (j != i && distance != UNREACHABLE) {
+                        graph.addEdge(from, sectionNodes[j], distance);
+                    }
+                }
+            }
+        }
+
+        // Counting sort of the edges by the node they leave
+        this.edgeStart = new int[graph.nodes + 1];
+        for (int e = 0; e < graph.edges; e++) {
+            edgeStart[graph.edgeFrom[e] + 1]++;
+        }
+        for (int n = 0; n < graph.nodes; n++) {
+            edgeStart[n + 1] += edgeStart[n];
+        }
+        this.edgeTargets = new int[graph.edges];
+        this.edgeCosts = new int[graph.edges];
+        fill = Arrays.copyOf(edgeStart, graph.nodes);
+        for (int e = 0; e < graph.edges; e++) {
+            int slot = fill[graph.edgeFrom[e]]++;
+            edgeTargets[slot] = graph.edgeTo[e];
+            edgeCosts[slot] = graph.edgeCost[e];
+        }
+
+        // Pick landmarks far apart, each the node furthest from those picked
+        // before it, and measure the distance from each to every node
+        this.landmarkDistance = new int[graph.nodes * landmarks];
+        int[] nearest = new int[graph.nodes];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int landmark = 0;
+        for (int k = 0; k < landmarks; k++) {
+            searchGraph(buffers, landmark);
+            for (int n = 0; n < graph.nodes; n++) {
+                int distance = buffers.isNodeVisited(n) ? buffers.nodeCost[n] : UNREACHABLE;
+                landmarkDistance[n * landmarks + k] = distance;
+                if (distance != UNREACHABLE) {
+                    nearest[n] = Math.min(nearest[n], distance);
+                }
+            }
+            // Nodes no landmark reaches yet come first
+            for (int n = 0; n < graph.nodes; n++) {
+                if (nearest[n] > nearest[landmark]) {
+                    landmark = n;
+                }
+            }
+        }
+        releaseScratch(buffers);
+    }
+
+    /**
+     * Adds an entrance for every run of open tiles along one border.
+     * The border is walked from (x, y) in steps of (dx, dy) up to and
+     * including the coordinate last; each tile is paired with the tile
+     * across the border from it.
+     */
+    private void addEntrances(Graph graph, int x, int y, int dx, int dy, int last) {
+        int acrossX = dy;
+        int acrossY = dx;
+        int runStart = -1;
+        int position = dx != 0 ? x : y;
+        for (; position <= last + 1; position++) {
+            int cell = dx != 0 ? y * width + position : position * width + x;
+            int across = cell + acrossY * width + acrossX;
+            boolean open = position <= last && map.ordinalAt(cell) != WALL && map.ordinalAt(across) != WALL;
+            if (open && runStart < 0) {
+                runStart = position;
+            } else if (!open && runStart >= 0) {
+                int middle = (runStart + position - 1) / 2;
+                int side = dx != 0 ? y * width + middle : middle * width + x;
+                int a = graph.addNode(side);
+                int b = graph.addNode(side + acrossY * width + acrossX);
+                graph.addEdge(a, b, 1);
+                graph.addEdge(b, a, 1);
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Finds the length of the path that path() would return. It is at
+     * least the true walking distance, and equal to it when the shortest
+     * path stays inside one section; for exact distances to a room's
+     * center use distanceFromRoom instead.
+     * @param startX the x coordinate of the first tile
+     * @param startY the y coordinate of the first tile
+     * @param endX the x coordinate of the last tile
+     * @param endY the y coordinate of the last tile
+     * @return the number of steps of a path between the tiles,
+     *         or UNREACHABLE if there is no path at all
+     */
+    public int distance(int startX, int startY, int endX, int endY) {
+        checkTile(startX, startY);
+        checkTile(endX, endY);
+        Scratch buffers = acquireScratch();
+        try {
+            return search(buffers, startY * width + startX, endY * width + endX);
+        } finally {
+            releaseScratch(buffers);
+        }
+    }
+
+    /**
+     * Finds a walkable path between two tiles. It is shortest inside each
+     * section, but crosses borders between sections in the middle of each
+     * opening, so it may be a little longer than a shortest path.
+     * @param startX the x coordinate of the first tile
+     * @param startY the y coordinate of the first tile
+     * @param endX the x coordinate of the last tile
+     * @param endY the y coordinate of the last tile
+     * @return the cells of a path from the first tile to the last,
+     *         both included, or an empty array if there is none
+     */
+    public int[] path(int startX, int startY, int endX, int endY) {
+        checkTile(startX, startY);
+        checkTile(endX, endY);
+        Scratch buffers = acquireScratch();
+        try {
+            return path(buffers, startY * width + startX, endY * width + endX);
+        } finally {
+            releaseScratch(buffers);
+        }
+    }
+
+    private int[] path(Scratch buffers, int start, int end) {
+        if (search(buffers, start, end) == UNREACHABLE) {
+            return new int[0];
+        }
+
+        // The entrance nodes passed through, from the first to the last
+        int last = buffers.lastNode;
+        int hops = 0;
+        for (int n = last; n != NO_PARENT; n = buffers.nodeParent[n]) {
+            hops++;
+        }
+        int[] via = new int[hops];
+        for (int n = last, i = hops - 1; n != NO_PARENT; n = buffers.nodeParent[n], i--) {
+            via[i] = n;
+        }
+
+        // Refine each hop into tiles, searching the section it crosses again
+        buffers.pathSize = 0;
+        buffers.appendPath(start);
+        int from = start;
+        for (int node : via) {
+            int cell = nodeCells[node];
+            if (sectionOf(from) == sectionOf(cell)) {
+                appendLocalPath(buffers, from, cell);
+            } else {
+                buffers.appendPath(cell);
+            }
+            from = cell;
+        }
+        appendLocalPath(buffers, from, end);
+        return Arrays.copyOf(buffers.path, buffers.pathSize);
+    }
+
+    /**
+     * Finds the distance from start to end. A path staying inside the start's
+     * section is measured directly; otherwise the start and end are linked
+     * to the entrances of their sections and the abstract graph is searched.
+     * Afterwards lastNode is the last entrance on the path, or NO_PARENT if
+     * the path does not use the abstract graph.
+     */
+    private int search(Scratch buffers, int start, int end) {
+        buffers.lastNode = NO_PARENT;
+        if (map.ordinalAt(start) == WALL || map.ordinalAt(end) == WALL) {
+            return UNREACHABLE;
+        }
+        int startSection = sectionOf(start);
+        int endSection = sectionOf(end);
+        int endX = end % width;
+        int endY = end / width;
+        buffers.nextNodeSearch();
+
+        // How far the end is from each entrance of its section, and so from
+        // each landmark. Many queries in a row often share an end, such as
+        // everything chasing the player, so this is kept for the next query
+        if (buffers.end != end) {
+            linkEnd(buffers, endSection, end);
+        }
+
+        int best = Integer.MAX_VALUE;
+        searchSection(buffers, startSection, start);
+        if (startSection == endSection && buffers.localDistance(end) != UNREACHABLE) {
+            best = buffers.localDistance(end);
+        }
+        for (int i = sectionStart[startSection]; i < sectionStart[startSection + 1]; i++) {
+            int node = sectionNodes[i];
+            int g = buffers.localDistance(nodeCells[node]);
+            if (g != UNREACHABLE) {
+                buffers.visitNode(node, g, NO_PARENT);
+                buffers.push(node, g + heuristic(buffers, node, endX, endY));
+            }
+        }
+
+        // The heuristic never overestimates, so once the cheapest open node
+        // cannot beat the best path found, nothing left can. It is also
+        // consistent, so a node is final the first time it is taken
+        while (buffers.heapSize > 0) {
+            if ((int) (buffers.heapKeys[0] >>> 32) >= best) {
+                break;
+            }
+            int node = buffers.pop();
+            if (!buffers.close(node)) {
+                continue;
+            }
+            int g = buffers.nodeCost[node];
+            if (nodeSections[node] == endSection && buffers.endCost[node] != UNREACHABLE
+                    && g + buffers.endCost[node] < best) {
+                best = g + buffers.endCost[node];
+                buffers.lastNode = node;
+            }
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int next = edgeTargets[e];
+                int nextG = g + edgeCosts[e];
+                if (!buffers.isNodeVisited(next) || nextG < buffers.nodeCost[next]) {
+                    buffers.visitNode(next, nextG, node);
+                    buffers.push(next, nextG + heuristic(buffers, next, endX, endY));
+                }
+            }
+        }
+        return best == Integer.MAX_VALUE ? UNREACHABLE : best;
+    }
+
+    /**
+     * Measures how far the end is from each entrance of its section,
+     * and from each landmark through those entrances.
+     */
+    private void linkEnd(Scratch buffers, int endSection, int end) {
+        searchSection(buffers, endSection, end);
+        Arrays.fill(buffers.endLandmarks, Integer.MAX_VALUE);
+        for (int i = sectionStart[endSection]; i < sectionStart[endSection + 1]; i++) {
+            int node = sectionNodes[i];
+            int cost = buffers.localDistance(nodeCells[node]);
+            buffers.endCost[node] = cost;
+            if (cost == UNREACHABLE) {
+                continue;
+            }
+            for (int k = 0; k < landmarks; k++) {
+                int fromLandmark = landmarkDistance[node * landmarks + k];
+                if (fromLandmark != UNREACHABLE) {
+                    buffers.endLandmarks[k] = Math.min(buffers.endLandmarks[k], fromLandmark + cost);
+                }
+            }
+        }
+        buffers.end = end;
+    }
+
+    /**
+     * Appends the tiles of a shortest path inside one section, leaving out
+     * the first tile, which is already on the path.
+     */
+    private void appendLocalPath(Scratch buffers, int from, int to) {
+        searchSection(buffers, sectionOf(from), from);
+        int steps = buffers.localDistance(to);
+        int end = buffers.pathSize + steps;
+        buffers.ensurePathCapacity(end);
+        for (int cell = to, i = end - 1; cell != from; cell = buffers.localParent(cell), i--) {
+            buffers.path[i] = cell;
+        }
+        buffers.pathSize = end;
+    }
+
+    /**
+     * Breadth-first search from a cell over the open tiles of one section.
+     */
+    private void searchSection(Scratch buffers, int section, int from) {
+        int minX = sectionMinX(section % sectionsX);
+        int minY = sectionMinY(section / sectionsX);
+        int w = sectionMaxX(section % sectionsX) - minX + 1;
+        int h = sectionMaxY(section / sectionsX) - minY + 1;
+        buffers.startLocalSearch(minX, minY, w, h);
+        int[] distance = buffers.localDistance;
+        int[] parent = buffers.localParent;
+        int[] queueX = buffers.queueX;
+        int[] queueY = buffers.queueY;
+
+        // Coordinates are queued relative to the section, so no tile needs a division
+        int head = 0;
+        int tail = 0;
+        queueX[tail] = from % width - minX;
+        queueY[tail] = from / width - minY;
+        distance[queueY[tail] * w + queueX[tail]] = 0;
+        parent[queueY[tail] * w + queueX[tail]] = NO_PARENT;
+        tail++;
+        while (head < tail) {
+            int x = queueX[head];
+            int y = queueY[head];
+            head++;
+            int cell = (minY + y) * width + minX + x;
+            int next = distance[y * w + x] + 1;
+            for (int i = 0; i < 4; i++) {
+                int adjX = x + D_X[i];
+                int adjY = y + D_Y[i];
+                if (adjX < 0 || adjY < 0 || adjX >= w || adjY >= h) {
+                    continue;
+                }
+                int local = adjY * w + adjX;
+                int adj = cell + D_Y[i] * width + D_X[i];
+                if (distance[local] == UNREACHABLE && map.ordinalAt(adj) != WALL) {
+                    distance[local] = next;
+                    parent[local] = cell;
+                    queueX[tail] = adjX;
+                    queueY[tail] = adjY;
+                    tail++;
+                }
+            }
+        }
+    }
+
+    /**
+     * A lower bound on the distance from a node to the end: the Manhattan
+     * distance, or, by the triangle inequality, how much nearer to or
+     * further from a landmark the end is than the node, whichever is more.
+     * The corridors between sections form few loops, so walking distances
+     * are often far longer than Manhattan ones, and the landmarks are what
+     * keep the search from spreading over the whole graph.
+     */
+    private int heuristic(Scratch buffers, int node, int endX, int endY) {
+        int cell = nodeCells[node];
+        int bound = Math.abs(cell % width - endX) + Math.abs(cell / width - endY);
+        for (int k = 0; k < landmarks; k++) {
+            int fromLandmark = landmarkDistance[node * landmarks + k];
+            int endFromLandmark = buffers.endLandmarks[k];
+            if (fromLandmark != UNREACHABLE && endFromLandmark != Integer.MAX_VALUE) {
+                bound = Math.max(bound, Math.abs(endFromLandmark - fromLandmark));
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Dijkstra's algorithm over the abstract graph from one node.
+     * Afterwards the scratch holds the distance to every node reached.
+     */
+    private void searchGraph(Scratch buffers, int from) {
+        buffers.nextNodeSearch();
+        buffers.visitNode(from, 0, NO_PARENT);
+        buffers.push(from, 0);
+        while (buffers.heapSize > 0) {
+            int node = buffers.pop();
+            if (!buffers.close(node)) {
+                continue;
+            }
+            int g = buffers.nodeCost[node];
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                int next = edgeTargets[e];
+                int nextG = g + edgeCosts[e];
+                if (!buffers.isNodeVisited(next) || nextG < buffers.nodeCost[next]) {
+                    buffers.visitNode(next, nextG, node);
+                    buffers.push(next, nextG);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param x the x coordinate of a tile
+     * @param y the y coordinate of a tile
+     * @return the number of steps from the starting room's center, or UNREACHABLE
+     */
+    public int distanceFromStart(int x, int y) {
+        return distanceFromRoom(startingRoom, x, y);
+    }
+
+    /**
+     * @param room the index of a room section, numbered row by row
+     * @param x the x coordinate of a tile
+     * @param y the y coordinate of a tile
+     * @return the number of steps from the room's center, or UNREACHABLE
+     */
+    public int distanceFromRoom(int room, int x, int y) {
+        checkTile(x, y);
+        return field(room)[y * width + x];
+    }
+
+    /**
+     * Walks one step down the distance field of a room, for moving
+     * towards it without planning a whole path.
+     * @param room the index of a room section, numbered row by row
+     * @param x the x coordinate of a tile
+     * @param y the y coordinate of a tile
+     * @return the cell of a neighbouring tile one step nearer the room's
+     *         center, or UNREACHABLE if the tile is the center or is cut off
+     */
+    public int stepTowardRoom(int room, int x, int y) {
+        checkTile(x, y);
+        int[] field = field(room);
+        int distance = field[y * width + x];
+        if (distance == UNREACHABLE || distance == 0) {
+            return UNREACHABLE;
+        }
+        for (int i = 0; i < 4; i++) {
+            int adjX = x + D_X[i];
+            int adjY = y + D_Y[i];
+            if (adjX >= 0 && adjY >= 0 && adjX < width && adjY < height
+                    && field[adjY * width + adjX] == distance - 1) {
+                return adjY * width + adjX;
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    /**
+     * @return the distance field of the room, from the cache or computed now
+     */
+    private int[] field(int room) {
+        if (room < 0 || room >= rooms.length) {
+            throw new IllegalArgumentException("No room section " + room);
+        }
+        synchronized (fields) {
+            int[] field = fields.get(room);
+            if (field != null) {
+                return field;
+            }
+        }
+        // Computed outside the lock so other rooms' fields stay available;
+        // two threads may compute the same field, and the first one is kept
+        int[] field = computeField(rooms[room].getCenterY() * width + rooms[room].getCenterX());
+        synchronized (fields) {
+            int[] cached = fields.putIfAbsent(room, field);
+            return cached != null ? cached : field;
+        }
+    }
+
+    /**
+     * Breadth-first search over the whole map from a cell.
+     * @return the number of steps from the cell to every cell
+     */
+    private int[] computeField(int from) {
+        int[] field = new int[width * height];
+        Arrays.fill(field, UNREACHABLE);
+        if (map.ordinalAt(from) == WALL) {
+            return field;
+        }
+        int[] queue = new int[INITIAL_CAPACITY];
+        int head = 0;
+        int tail = 0;
+        field[from] = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int i = 0; i < 4; i++) {
+                int adjX = x + D_X[i];
+                int adjY = y + D_Y[i];
+                if (adjX < 0 || adjY < 0 || adjX >= width || adjY >= height) {
+                    continue;
+                }
+                int adj = adjY * width + adjX;
+                if (field[adj] == UNREACHABLE && map.ordinalAt(adj) != WALL) {
+                    field[adj] = field[cell] + 1;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = adj;
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * @return idle scratch buffers from the pool, or new ones if none are idle
+     */
+    private Scratch acquireScratch() {
+        Scratch buffers = idleScratch.poll();
+        if (buffers == null) {
+            return new Scratch(maxSectionArea, nodeCells.length, landmarks);
+        }
+        idleScratchCount.decrementAndGet();
+        return buffers;
+    }
+
+    /**
+     * Returns scratch buffers to the pool, dropping them if it is full.
+     */
+    private void releaseScratch(Scratch buffers) {
+        if (idleScratchCount.incrementAndGet() <= maxIdleScratch) {
+            idleScratch.offer(buffers);
+        } else {
+            idleScratchCount.decrementAndGet();
+        }
+    }
+
+    private void checkTile(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IllegalArgumentException("Tile (" + x + ", " + y + ") is outside the dungeon");
+        }
+    }
+
+    private int sectionOf(int cell) {
+        int sectionX = Math.min(cell % width / sectionWidth, sectionsX - 1);
+        int sectionY = Math.min(cell / width / sectionHeight, sectionsY - 1);
+        return sectionY * sectionsX + sectionX;
+    }
+
+    private int sectionMinX(int sectionX) {
+        return sectionX * sectionWidth;
+    }
+
+    private int sectionMinY(int sectionY) {
+        return sectionY * sectionHeight;
+    }
+
+    private int sectionMaxX(int sectionX) {
+        return sectionX == sectionsX - 1 ? width - 1 : (sectionX + 1) * sectionWidth - 1;
+    }
+
+    private int sectionMaxY(int sectionY) {
+        return sectionY == sectionsY - 1 ? height - 1 : (sectionY + 1) * sectionHeight - 1;
+    }
+
+    /**
+     * @return the number of entrance nodes in the abstract graph
+     */
+    public int nodeCount() {
+        return nodeCells.length;
+    }
+
+    /**
+     * @return the number of edges in the abstract graph
+     */
+    public int edgeCount() {
+        return edgeTargets.length;
+    }
+
+    /**
+     * The abstract graph while it is being built.
+     */
+    private static final class Graph {
+        private int[] nodeCells = new int[INITIAL_CAPACITY];
+        private int nodes;
+        private int[] edgeFrom = new int[INITIAL_CAPACITY];
+        private int[] edgeTo = new int[INITIAL_CAPACITY];
+        private int[] edgeCost = new int[INITIAL_CAPACITY];
+        private int edges;
+
+        private int addNode(int cell) {
+            if (nodes == nodeCells.length) {
+                nodeCells = Arrays.copyOf(nodeCells, nodes * 2);
+            }
+            nodeCells[nodes] = cell;
+            return nodes++;
+        }
+
+        private void addEdge(int from, int to, int cost) {
+            if (edges == edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, edges * 2);
+                edgeTo = Arrays.copyOf(edgeTo, edges * 2);
+                edgeCost = Arrays.copyOf(edgeCost, edges * 2);
+            }
+            edgeFrom[edges] = from;
+            edgeTo[edges] = to;
+            edgeCost[edges] = cost;
+            edges++;
+        }
+    }
+
+    /**
+     * Search state of one query. Like the corridor router, each node is
+     * stamped with the search it was last written by, so starting a search
+     * only bumps the stamp. Section searches use buffers indexed relative
+     * to the section's top left tile, sized for the largest section.
+     */
+    private final class Scratch {
+        // Section search
+        private final int[] localDistance;
+        private final int[] localParent;
+        private final int[] queueX;
+        private final int[] queueY;
+        private int localX;
+        private int localY;
+        private int localWidth;
+        private int localHeight;
+
+        // Abstract search
+        private final int[] nodeCost;
+        private final int[] nodeParent;
+        private final int[] nodeStamp;
+        private final int[] closedStamp;
+        private final int[] endCost;
+        private final int[] endLandmarks;
+        private int search;
+        private int lastNode;
+        // The end the end costs were last measured for
+        private int end = NO_PARENT;
+        private long[] heapKeys = new long[INITIAL_CAPACITY];
+        private int heapSize;
+
+        // Path being refined
+        private int[] path = new int[INITIAL_CAPACITY];
+        private int pathSize;
+
+        private Scratch(int maxSectionArea, int nodes, int landmarks) {
+            localDistance = new int[maxSectionArea];
+            localParent = new int[maxSectionArea];
+            queueX = new int[maxSectionArea];
+            queueY = new int[maxSectionArea];
+            nodeCost = new int[nodes];
+            nodeParent = new int[nodes];
+            nodeStamp = new int[nodes];
+            closedStamp = new int[nodes];
+            endCost = new int[nodes];
+            endLandmarks = new int[landmarks];
+        }
+
+        private void startLocalSearch(int minX, int minY, int sectionWidth, int sectionHeight) {
+            localX = minX;
+            localY = minY;
+            localWidth = sectionWidth;
+            localHeight = sectionHeight;
+            Arrays.fill(localDistance, 0, sectionWidth * sectionHeight, UNREACHABLE);
+        }
+
+        private int local(int cell) {
+            return (cell / width - localY) * localWidth + cell % width - localX;
+        }
+
+        /**
+         * @return the distance of a cell from the last section search,
+         *         UNREACHABLE if it was not reached or is outside the section
+         */
+        private int localDistance(int cell) {
+            int x = cell % width - localX;
+            int y = cell / width - localY;
+            if (x < 0 || y < 0 || x >= localWidth || y >= localHeight) {
+                return UNREACHABLE;
+            }
+            return localDistance[y * localWidth + x];
+        }
+
+        private int localParent(int cell) {
+            return localParent[local(cell)];
+        }
+
+        private void nextNodeSearch() {
+            search++;
+            if (search == 0) {
+                Arrays.fill(nodeStamp, 0);
+                Arrays.fill(closedStamp, 0);
+                search = 1;
+            }
+            heapSize = 0;
+        }
+
+        private boolean isNodeVisited(int node) {
+            return nodeStamp[node] == search;
+        }
+
+        /**
+         * @return true if the node was still open, and so is taken now
+         */
+        private boolean close(int node) {
+            if (closedStamp[node] == search) {
+                return false;
+            }
+            closedStamp[node] = search;
+            return true;
+        }
+
+        private void visitNode(int node, int cost, int parent) {
+            nodeStamp[node] = search;
+            nodeCost[node] = cost;
+            nodeParent[node] = parent;
+        }
+
+        private void appendPath(int cell) {
+            ensurePathCapacity(pathSize + 1);
+            path[pathSize++] = cell;
+        }
+
+        private void ensurePathCapacity(int capacity) {
+            if (path.length < capacity) {
+                path = Arrays.copyOf(path, Math.max(capacity, path.length * 2));
+            }
+        }
+
+        private void push(int node, int f) {
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            }
+            long key = ((long) f << 32) | node;
+            int i = heapSize++;
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (heapKeys[up] <= key) {
+                    break;
+                }
+                heapKeys[i] = heapKeys[up];
+                i = up;
+            }
+            heapKeys[i] = key;
+        }
+
+        private int pop() {
+            int top = (int) heapKeys[0];
+            heapSize--;
+            long key = heapKeys[heapSize];
+            int i = 0;
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                    child++;
+                }
+                if (key <= heapKeys[child]) {
+                    break;
+                }
+                heapKeys[i] = heapKeys[child];
+                i = child;
+            }
+            heapKeys[i] = key;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package dungeon.dungeonmaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Generates dungeons by passing them through a chain of stages.
+ * <p>
+ * A single dungeon can be run through the stages one after another on the
+ * calling thread. In batch mode every stage runs on a thread of its own,
+ * with a bounded queue to the next stage, so while corridors are routed
+ * for one dungeon, rooms are already being placed for the next. A batch
+ * is as fast as its slowest stage rather than the sum of all of them, and
+ * a full queue holds back the stages before it instead of piling up
+ * dungeons in memory.
+ * <p>
+ * Each stage records how long it takes per dungeon, how long it waits
+ * for a dungeon to work on, and how long it waits for room in the queue
+ * after it. A stage that is rarely kept waiting is the bottleneck.
+ */
+public class DungeonPipeline {
+
+    // static final variables
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+    // Marks the end of a batch in a queue
+    private static final DungeonState END = new DungeonState(null);
+
+    // Instance variables
+    private final int queueCapacity;
+    private final List<String> names = new ArrayList<>();
+    private final List<DungeonStage> stages = new ArrayList<>();
+    private final List<LatencyHistogram> latencies = new ArrayList<>();
+    private final List<LongAdder> starvedNanos = new ArrayList<>();
+    private final List<LongAdder> blockedNanos = new ArrayList<>();
+
+    /**
+     * Constructor to instantiate a DungeonPipeline with the default queue capacity.
+     */
+    public DungeonPipeline() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor to instantiate a new DungeonPipeline with no stages.
+     * @param queueCapacity the most dungeons waiting between two stages in batch mode
+     */
+    public DungeonPipeline(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return a pipeline that clears the map, places rooms, then routes corridors
+     */
+    public static DungeonPipeline standard() {
+        return new DungeonPipeline()
+                .addStage("Clearing map", DungeonStage.initMap())
+                .addStage("Placing rooms", DungeonStage.createRooms())
+                .addStage("Routing corridors", DungeonStage.connectRooms());
+    }
+
+    /**
+     * Appends a stage to the end of the pipeline.
+     * @param name what the stage does, for progress messages
+     * @param stage the stage
+     * @return this pipeline
+     */
+    public DungeonPipeline addStage(String name, DungeonStage stage) {
+        if (stage == null) {
+            throw new IllegalArgumentException("Stage " + name + " is null");
+        }
+        names.add(name);
+        stages.add(stage);
+        latencies.add(new LatencyHistogram());
+        starvedNanos.add(new LongAdder());
+        blockedNanos.add(new LongAdder());
+        return this;
+    }
+
+    /**
+     * Runs one stage on the calling thread, recording how long it took.
+     * @param i the index of the stage
+     * @param state the dungeon to work on
+     * @return the state the stage returned
+     */
+    public DungeonState runStage(int i, DungeonState state) {
+        long start = System.nanoTime();
+        DungeonState result = stages.get(i).apply(state);
+        latencies.get(i).record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Runs every stage on one dungeon, in order, on the calling thread.
+     * @param state the dungeon to work on
+     * @return the state the last stage returned
+     */
+    public DungeonState run(DungeonState state) {
+        for (int i = 0; i < stages.size(); i++) {
+            state = runStage(i, state);
+        }
+        return state;
+    }
+
+    /**
+     * Generates one dungeon per seed in [firstSeed, firstSeed + count),
+     * blocking until all of them have been passed to the consumer.
+     * Each stage runs on its own thread, but the consumer is called on the
+     * calling thread, in seed order, so it need not be thread-safe.
+     * If a stage or the consumer throws, the batch is stopped and the
+     * exception is rethrown here.
+     * @param parameters the parameters every dungeon is generated with
+     * @param firstSeed the first seed of the range
+     * @param count the number of dungeons to generate
+     * @param consumer receives each finished dungeon
+     */
+    public void run(DungeonParameters parameters, long firstSeed, int count,
+                    Consumer<DungeonState> consumer) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative dungeon count: " + count);
+        }
+        // Queue i feeds stage i; the last queue feeds the consumer
+        List<BlockingQueue<DungeonState>> queues = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        Thread caller = Thread.currentThread();
+
+        // Every dungeon gets its own GridDungeon, as several are in flight at once
+        threads.add(start("pipeline-source", failure, caller, () -> {
+            BlockingQueue<DungeonState> out = queues.get(0);
+            for (int i = 0; i < count; i++) {
+                out.put(new DungeonState(parameters.newDungeon(firstSeed + i)));
+            }
+            out.put(END);
+        }));
+        for (int i = 0; i < stages.size(); i++) {
+            int stage = i;
+            threads.add(start("pipeline-" + names.get(i), failure, caller,
+                    () -> work(stage, queues.get(stage), queues.get(stage + 1))));
+        }
+
+        try {
+            BlockingQueue<DungeonState> finished = queues.get(stages.size());
+            for (DungeonState state = finished.take(); state != END; state = finished.take()) {
+                consumer.accept(state);
+            }
+        } catch (InterruptedException e) {
+            // A stage failed and stopped the batch, or the caller was interrupted
+            if (failure.compareAndSet(null, new CancellationException("Interrupted while running a batch"))) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (failure.get() != null) {
+                threads.forEach(Thread::interrupt);
+            }
+            joinAll(threads);
+        }
+
+        Throwable thrown = failure.get();
+        if (thrown != null && !(thrown instanceof CancellationException)) {
+            // Clear the interrupt that woke the caller up when a stage failed
+            Thread.interrupted();
+        }
+        if (thrown instanceof RuntimeException e) {
+            throw e;
+        }
+        if (thrown instanceof Error e) {
+            throw e;
+        }
+    }
+
+    /**
+     * Takes dungeons from one queue, runs a stage on them and puts them in
+     * the next, until the end of the batch comes through.
+     */
+    private void work(int i, BlockingQueue<DungeonState> in, BlockingQueue<DungeonState> out)
+            throws InterruptedException {
+        while (true) {
+            long waitStart = System.nanoTime();
+            DungeonState state = in.take();
+            long workStart = System.nanoTime();
+            starvedNanos.get(i).add(workStart - waitStart);
+            if (state == END) {
+                out.put(END);
+                return;
+            }
+            DungeonState result = runStage(i, state);
+            long putStart = System.nanoTime();
+            out.put(result);
+            blockedNanos.get(i).add(System.nanoTime() - putStart);
+        }
+    }
+
+    /**
+     * Starts a daemon thread for part of a batch. If it fails, the first
+     * failure is kept and every thread of the batch is interrupted.
+     */
+    private static Thread start(String name, AtomicReference<Throwable> failure, Thread caller,
+                                Work work) {
+        Thread thread = new Thread(() -> {
+            try {
+                work.run();
+            } catch (InterruptedException e) {
+                // Stopped because another part of the batch failed
+            } catch (RuntimeException | Error e) {
+                if (failure.compareAndSet(null, e)) {
+                    caller.interrupt();
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void joinAll(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of stages
+     */
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    /**
+     * @param i the index of a stage
+     * @return what the stage does
+     */
+    public String getStageName(int i) {
+        return names.get(i);
+    }
+
+    /**
+     * @param i the index of a stage
+     * @return how long the stage takes per dungeon
+     */
+    public LatencyHistogram getStageLatency(int i) {
+        return latencies.get(i);
+    }
+
+    /**
+     * @param i the index of a stage
+     * @return the total nanoseconds the stage waited for a dungeon to work on
+     */
+    public long getStageStarvedNanos(int i) {
+        return starvedNanos.get(i).sum();
+    }
+
+    /**
+     * @param i the index of a stage
+     * @return the total nanoseconds the stage waited for room in the next queue
+     */
+    public long getStageBlockedNanos(int i) {
+        return blockedNanos.get(i).sum();
+    }
+
+    /**
+     * Part of a batch, run on its own thread.
+     */
+    @FunctionalInterface
+    private interface Work {
+        void run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,346 @@
+package dungeon.dungeonmaker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Reads dungeons written in the binary dungeon format (see {@link DungeonFormat}).
+ * Tile lookups decode only the row they fall in, so a memory-mapped
+ * file can be queried without ever decoding the whole map.
+ * <p>
+ * Opening a file checks the header, the room table and the row offsets,
+ * which costs time in the number of rows and rooms, not tiles, so a
+ * truncated file or a bad table fails there with an IOException. The
+ * runs of a row are checked the first time the row is read: toSnapshot
+ * and checkRows fail with an IOException, and getType, which cannot
+ * throw one, with an UncheckedIOException wrapping it. A row is only
+ * ever checked once per reader. Safe to share between threads.
+ */
+public class DungeonReader implements TileGrid {
+
+    // Instance variables
+    private final ByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final int sectionsX;
+    private final int sectionsY;
+    private final int startingRoom;
+    private final int roomCount;
+    private final int roomsStart;
+    private final int rowOffsetsStart;
+    private final int tilesStart;
+    // One bit per row whose runs have been checked, or null if all of them are known to be valid
+    private final AtomicLongArray checkedRows;
+
+    private DungeonReader(ByteBuffer buffer, boolean rowsValid) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < DungeonFormat.HEADER_SIZE || buffer.getInt(0) != DungeonFormat.MAGIC) {
+            throw new IOException("Not a dungeon file");
+        }
+        short version = buffer.getShort(4);
+        if (version != DungeonFormat.VERSION) {
+            throw new IOException("Unsupported dungeon file version: " + version);
+        }
+        this.width = buffer.getInt(8);
+        this.height = buffer.getInt(12);
+        this.seed = buffer.getLong(16);
+        this.sectionsX = buffer.getInt(24);
+        this.sectionsY = buffer.getInt(28);
+        this.startingRoom = buffer.getInt(32);
+        this.roomCount = buffer.getInt(36);
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt dungeon file: bad size " + width + "x" + height);
+        }
+        if (sectionsX <= 0 || sectionsY <= 0 || (long) sectionsX * sectionsY != roomCount) {
+            throw new IOException("Corrupt dungeon file: " + roomCount + " rooms in a "
+                    + sectionsX + "x" + sectionsY + " section layout");
+        }
+        if (startingRoom < 0 || startingRoom >= roomCount) {
+            throw new IOException("Corrupt dungeon file: starting room " + startingRoom
+                    + " of " + roomCount);
+        }
+
+        // Computed as longs, so a huge count cannot wrap into a valid offset
+        long rowOffsets = DungeonFormat.HEADER_SIZE + (long) roomCount * DungeonFormat.ROOM_SIZE;
+        long tiles = rowOffsets + (height + 1L) * 4;
+        if (tiles > buffer.limit()) {
+            throw new IOException("Truncated dungeon file: " + buffer.limit()
+                    + " bytes, the tables alone take " + tiles);
+        }
+        this.roomsStart = DungeonFormat.HEADER_SIZE;
+        this.rowOffsetsStart = (int) rowOffsets;
+        this.tilesStart = (int) tiles;
+        checkRooms();
+        checkRowOffsets();
+        this.checkedRows = rowsValid ? null : new AtomicLongArray((height + 63) >>> 6);
+    }
+
+    /**
+     * Checks that every room lies inside the map.
+     */
+    private void checkRooms() throws IOException {
+        for (int i = 0; i < roomCount; i++) {
+            int pos = roomsStart + i * DungeonFormat.ROOM_SIZE;
+            byte containsRoom = buffer.get(pos);
+            int centerX = buffer.getInt(pos + 1);
+            int centerY = buffer.getInt(pos + 5);
+            int originX = buffer.getInt(pos + 9);
+            int originY = buffer.getInt(pos + 13);
+            int roomWidth = buffer.getInt(pos + 17);
+            int roomHeight = buffer.getInt(pos + 21);
+            boolean valid = (containsRoom == 0 || containsRoom == 1)
+                    && centerX >= 0 && centerX < width && centerY >= 0 && centerY < height
+                    && originX >= 0 && originY >= 0 && roomWidth >= 0 && roomHeight >= 0
+                    && (long) originX + roomWidth <= width && (long) originY + roomHeight <= height;
+            if (!valid) {
+                throw new IOException("Corrupt dungeon file: room " + i + " lies outside the map");
+            }
+        }
+    }
+
+    /**
+     * Checks that the rows start at the beginning of the tile data, each
+     * where the previous one ended, that each is long enough to hold a
+     * run, and that the last one ends inside the file.
+     */
+    private void checkRowOffsets() throws IOException {
+        int length = rowOffset(height);
+        if (rowOffset(0) != 0 || length < 0 || length > buffer.limit() - tilesStart) {
+            throw new IOException("Truncated or corrupt dungeon file: bad tile data length");
+        }
+        int previous = 0;
+        for (int y = 1; y <= height; y++) {
+            int next = rowOffset(y);
+            // A row holds at least one run of a type byte and a length byte
+            if (next < previous + 2 || next > length) {
+                throw new IOException("Corrupt dungeon file: bad offset for row " + y);
+            }
+            previous = next;
+        }
+    }
+
+    /**
+     * Checks that the runs of a row are of known tile types and add up
+     * to exactly the width, unless the row was checked before.
+     */
+    private void checkRow(int y) throws IOException {
+        if (checkedRows == null || (checkedRows.get(y >>> 6) & (1L << y)) != 0) {
+            return;
+        }
+        int types = TileType.values().length;
+        int pos = tilesStart + rowOffset(y);
+        int end = tilesStart + rowOffset(y + 1);
+        int covered = 0;
+        while (covered < width) {
+            if (pos >= end) {
+                throw new IOException("Corrupt dungeon file: row " + y + " is " + covered
+                        + " tiles wide, not " + width);
+            }
+            int type = buffer.get(pos++);
+            if (type < 0 || type >= types) {
+                throw new IOException("Corrupt dungeon file: unknown tile type " + type + " in row " + y);
+            }
+            // A run length takes at most five bytes, all inside the row
+            long run = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (pos >= end || shift > 28) {
+                    throw new IOException("Corrupt dungeon file: bad run length in row " + y);
+                }
+                b = buffer.get(pos++);
+                run |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (run <= 0 || run > width - covered) {
+                throw new IOException("Corrupt dungeon file: run of " + run + " tiles overflows row " + y);
+            }
+            covered += (int) run;
+        }
+        if (pos != end) {
+            throw new IOException("Corrupt dungeon file: trailing bytes after row " + y);
+        }
+        checkedRows.getAndAccumulate(y >>> 6, 1L << y, (bits, bit) -> bits | bit);
+    }
+
+    /**
+     * Checks every row not read yet, for callers that want a corrupt
+     * file to fail now rather than on the first read of a bad row.
+     * @throws IOException if a row is corrupt
+     */
+    public void checkRows() throws IOException {
+        for (int y = 0; y < height; y++) {
+            checkRow(y);
+        }
+    }
+
+    /**
+     * Memory-maps a dungeon file, checking it as described above.
+     * @param path the file to map
+     * @return a reader over the mapped file
+     * @throws IOException if the file could not be mapped or is not a dungeon file
+     */
+    public static DungeonReader map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Dungeon file too large to map: " + channel.size() + " bytes");
+            }
+            return new DungeonReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), false);
+        }
+    }
+
+    /**
+     * @param bytes a dungeon in the binary dungeon format
+     * @return a reader over the bytes
+     * @throws IOException if the bytes are not a dungeon
+     */
+    public static DungeonReader wrap(byte[] bytes) throws IOException {
+        return new DungeonReader(ByteBuffer.wrap(bytes), false);
+    }
+
+    /**
+     * Wraps bytes that are known to hold valid rows, such as those
+     * DungeonFormat made, so their rows are never checked.
+     * @param bytes a dungeon in the binary dungeon format, with valid rows
+     * @return a reader over the bytes
+     */
+    static DungeonReader wrapValid(byte[] bytes) {
+        try {
+            return new DungeonReader(ByteBuffer.wrap(bytes), true);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a valid dungeon encoding", e);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public TileType getType(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException("Tile (" + x + ", " + y + ") is outside the dungeon");
+        }
+        try {
+            checkRow(y);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int pos = tilesStart + rowOffset(y);
+        int covered = 0;
+        while (true) {
+            int type = buffer.get(pos++);
+            // Decode the run length varint
+            int run = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(pos++);
+                run |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            covered += run;
+            if (x < covered) {
+                return TileType.fromOrdinal(type);
+            }
+        }
+    }
+
+    /**
+     * @return the seed the dungeon was generated from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the number of room sections across
+     */
+    public int getSectionsX() {
+        return sectionsX;
+    }
+
+    /**
+     * @return the number of room sections down
+     */
+    public int getSectionsY() {
+        return sectionsY;
+    }
+
+    /**
+     * @return the index of the room the player starts in
+     */
+    public int getStartingRoomIndex() {
+        return startingRoom;
+    }
+
+    /**
+     * @return the number of room sections in the dungeon
+     */
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    /**
+     * @param i the index of a room section, numbered row by row
+     * @return the room section at the given index
+     */
+    public DungeonRoom getRoom(int i) {
+        int pos = roomsStart + i * DungeonFormat.ROOM_SIZE;
+        DungeonRoom room = new DungeonRoom();
+        room.setRoomIndex(i % sectionsX, i / sectionsX);
+        room.setContainsRoom(buffer.get(pos) != 0);
+        room.setRoomCenter(buffer.getInt(pos + 1), buffer.getInt(pos + 5));
+        room.setBounds(buffer.getInt(pos + 9), buffer.getInt(pos + 13),
+                buffer.getInt(pos + 17), buffer.getInt(pos + 21));
+        return room;
+    }
+
+    /**
+     * Decodes the whole dungeon.
+     * @return a snapshot holding every tile and room of the dungeon
+     * @throws IOException if a row is corrupt
+     */
+    public DungeonSnapshot toSnapshot() throws IOException {
+        TileMap tileMap = new TileMap(width, height);
+        for (int y = 0; y < height; y++) {
+            checkRow(y);
+            int pos = tilesStart + rowOffset(y);
+            int x = 0;
+            while (x < width) {
+                TileType type = TileType.fromOrdinal(buffer.get(pos++));
+                int run = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(pos++);
+                    run |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                tileMap.fillRect(x, y, run, 1, type);
+                x += run;
+            }
+        }
+        DungeonRoom[] rooms = new DungeonRoom[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            rooms[i] = getRoom(i);
+        }
+        return new DungeonSnapshot(seed, sectionsX, sectionsY, tileMap, rooms, startingRoom);
+    }
+
+    private int rowOffset(int y) {
+        return buffer.getInt(rowOffsetsStart + y * 4);
+    }
+}
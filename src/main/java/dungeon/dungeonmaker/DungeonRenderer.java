@@ -0,0 +1,343 @@
+package dungeon.dungeonmaker;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Paints a TileGrid onto a single Canvas, through a viewport that can
+ * be panned and zoomed.
+ * <p>
+ * Only the tiles inside the viewport are drawn, so the cost of a frame
+ * depends on the size of the canvas rather than the size of the map.
+ * While tiles are a few pixels wide, each tile is an outlined rectangle,
+ * and the renderer remembers what was painted in each visible tile so
+ * that each frame only repaints the tiles whose TileType changed since
+ * the last one. Zoomed out further, the viewport is drawn as an image
+ * in which each pixel shows the tiles under it, read from a max-reduced
+ * TilePyramid built once per grid, so a pixel is open if any tile it
+ * covers is open and corridors stay visible at every zoom.
+ * Items, if any are set, are drawn as dots over the tiles while zoomed in.
+ */
+public class DungeonRenderer {
+
+    // static final variables
+    private static final Color GRID_COLOR = Color.GRAY;
+    private static final Color ITEM_COLOR = Color.GOLDENROD;
+    private static final byte NOT_PAINTED = -1;
+    public static final double MIN_ZOOM = 1.0 / 256;
+    public static final double MAX_ZOOM = 64;
+    // Tiles narrower than this are drawn as pixels of an overview image
+    private static final double MIN_TILE_ZOOM = 4;
+    private static final int[] ARGB = new int[TileType.values().length];
+    private static final Color[] FILLS = new Color[TileType.values().length];
+
+    static {
+        for (TileType type : TileType.values()) {
+            int rgb = type.getRgb();
+            ARGB[type.ordinal()] = 0xff000000 | rgb;
+            FILLS[type.ordinal()] = Color.rgb(rgb >> 16, rgb >> 8 & 0xff, rgb & 0xff);
+        }
+    }
+
+    // Instance variables
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private GenerationMetrics metrics = GenerationMetrics.getDefault();
+    private ItemLayout items;
+
+    // The viewport: the tile at the canvas's top left corner, and pixels per tile
+    private double viewX;
+    private double viewY;
+    private double zoom = 1;
+    private int gridWidth;
+    private int gridHeight;
+    private boolean viewChanged = true;
+
+    // What was painted in each tile of the visible range, when zoomed in
+    private byte[] painted = new byte[0];
+    private int paintedX;
+    private int paintedY;
+    private int paintedColumns;
+    private int paintedRows;
+
+    // Pixels of the overview image, when zoomed out, and the grid they are read from
+    private WritableImage overview;
+    private int[] overviewPixels = new int[0];
+    private TileGrid pyramidGrid;
+    private TilePyramid pyramid;
+
+    /**
+     * Constructor to instantiate a new DungeonRenderer
+     * @param canvas the canvas the dungeon will be painted on
+     */
+    public DungeonRenderer(Canvas canvas) {
+        this.canvas = canvas;
+        this.gc = canvas.getGraphicsContext2D();
+    }
+
+    /**
+     * Paints the part of the grid inside the viewport. A grid of a new
+     * size is first fitted to the canvas.
+     * @param grid the tiles to paint
+     */
+    public void render(TileGrid grid) {
+        long start = System.nanoTime();
+        if (grid.getWidth() != gridWidth || grid.getHeight() != gridHeight) {
+            gridWidth = grid.getWidth();
+            gridHeight = grid.getHeight();
+            fitToCanvas();
+        }
+        if (zoom >= MIN_TILE_ZOOM) {
+            renderTiles(grid);
+        } else {
+            renderOverview(grid);
+        }
+        viewChanged = false;
+        metrics.getRender().record(System.nanoTime() - start);
+    }
+
+    /**
+     * Paints only the given tiles, for when the caller already knows
+     * exactly which tiles changed since the last render.
+     * @param grid the tiles to paint
+     * @param changes the tiles that changed
+     */
+    public void render(TileGrid grid, TileChanges changes) {
+        // The grid may have been changed in place, so its overview is stale
+        pyramidGrid = null;
+        if (grid.getWidth() != gridWidth || grid.getHeight() != gridHeight
+                || viewChanged || zoom < MIN_TILE_ZOOM) {
+            render(grid);
+            return;
+        }
+
+        long start = System.nanoTime();
+        gc.setStroke(GRID_COLOR);
+        for (int i = 0; i < changes.size(); i++) {
+            int x = changes.getX(i) - paintedX;
+            int y = changes.getY(i) - paintedY;
+            if (x < 0 || y < 0 || x >= paintedColumns || y >= paintedRows) {
+                continue;
+            }
+            TileType type = grid.getType(x + paintedX, y + paintedY);
+            paintTile(x + paintedX, y + paintedY, type);
+            painted[y * paintedColumns + x] = (byte) type.ordinal();
+        }
+        paintItems();
+        metrics.getRender().record(System.nanoTime() - start);
+    }
+
+    /**
+     * Repaints every visible tile of the grid that changed since the last render.
+     */
+    private void renderTiles(TileGrid grid) {
+        int firstX = Math.max(0, (int) Math.floor(viewX));
+        int firstY = Math.max(0, (int) Math.floor(viewY));
+        int lastX = Math.min(gridWidth - 1, (int) Math.floor(viewX + canvas.getWidth() / zoom));
+        int lastY = Math.min(gridHeight - 1, (int) Math.floor(viewY + canvas.getHeight() / zoom));
+        int columns = Math.max(0, lastX - firstX + 1);
+        int rows = Math.max(0, lastY - firstY + 1);
+
+        // A moved viewport invalidates everything painted so far
+        if (viewChanged || firstX != paintedX || firstY != paintedY
+                || columns != paintedColumns || rows != paintedRows) {
+            gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            paintedX = firstX;
+            paintedY = firstY;
+            paintedColumns = columns;
+            paintedRows = rows;
+            if (painted.length < columns * rows) {
+                painted = new byte[columns * rows];
+            }
+            Arrays.fill(painted, NOT_PAINTED);
+        }
+
+        gc.setStroke(GRID_COLOR);
+        int i = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++, i++) {
+                TileType type = grid.getType(firstX + x, firstY + y);
+                if (painted[i] != type.ordinal()) {
+                    paintTile(firstX + x, firstY + y, type);
+                    painted[i] = (byte) type.ordinal();
+                }
+            }
+        }
+        paintItems();
+    }
+
+    /**
+     * Draws the items inside the visible range over the tiles. Items are
+     * few next to tiles, so they are simply all redrawn every frame.
+     */
+    private void paintItems() {
+        if (items == null) {
+            return;
+        }
+        gc.setFill(ITEM_COLOR);
+        double size = zoom / 2;
+        items.forEachInRect(paintedX, paintedY,
+                paintedX + paintedColumns - 1, paintedY + paintedRows - 1, item -> {
+            double left = (items.getX(item) - viewX) * zoom + size / 2;
+            double top = (items.getY(item) - viewY) * zoom + size / 2;
+            gc.fillOval(left, top, size, size);
+        });
+    }
+
+    /**
+     * Sets the items drawn over the tiles from the next render on.
+     * @param items the items to draw, or null to draw none
+     */
+    public void setItems(ItemLayout items) {
+        this.items = items;
+        viewChanged = true;
+    }
+
+    /**
+     * Draws the viewport as an image, each pixel showing the highest
+     * TileType among the tiles under it, so a pixel shows floor if any
+     * of its tiles is open. The pyramid is only built again for a new
+     * grid, and each pixel reads a few of its cells, so a frame costs
+     * the same however many tiles a pixel covers.
+     */
+    private void renderOverview(TileGrid grid) {
+        int pixelsX = (int) canvas.getWidth();
+        int pixelsY = (int) canvas.getHeight();
+        if (overview == null || overview.getWidth() != pixelsX || overview.getHeight() != pixelsY) {
+            overview = new WritableImage(Math.max(1, pixelsX), Math.max(1, pixelsY));
+            overviewPixels = new int[pixelsX * pixelsY];
+        }
+        if (grid != pyramidGrid) {
+            pyramid = new TilePyramid(grid);
+            pyramidGrid = grid;
+        }
+
+        double block = 1 / zoom;
+        for (int py = 0; py < pixelsY; py++) {
+            // The tiles that overlap the pixel's block
+            int minY = Math.max(0, (int) Math.floor(viewY + py * block));
+            int maxY = Math.min(gridHeight - 1, (int) Math.ceil(viewY + (py + 1) * block) - 1);
+            for (int px = 0; px < pixelsX; px++) {
+                int minX = Math.max(0, (int) Math.floor(viewX + px * block));
+                int maxX = Math.min(gridWidth - 1, (int) Math.ceil(viewX + (px + 1) * block) - 1);
+                overviewPixels[py * pixelsX + px] = minX > maxX || minY > maxY
+                        ? 0 : ARGB[pyramid.maxOrdinal(minX, minY, maxX, maxY)];
+            }
+        }
+
+        overview.getPixelWriter().setPixels(0, 0, pixelsX, pixelsY,
+                PixelFormat.getIntArgbInstance(), overviewPixels, 0, pixelsX);
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.drawImage(overview, 0, 0);
+    }
+
+    /**
+     * Wipes the canvas and forgets what was painted, so the next render
+     * repaints every visible tile. A grid that was changed in place must
+     * be cleared before it is rendered again, as its overview is only
+     * rebuilt for a new grid.
+     */
+    public void clear() {
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        viewChanged = true;
+        pyramidGrid = null;
+        pyramid = null;
+    }
+
+    /**
+     * Zooms and moves the viewport so the whole grid fits on the canvas.
+     */
+    public void fitToCanvas() {
+        if (gridWidth == 0 || gridHeight == 0) {
+            return;
+        }
+        double fit = Math.min(canvas.getWidth() / gridWidth, canvas.getHeight() / gridHeight);
+        // Whole pixels per tile keep the grid lines crisp
+        zoom = clampZoom(fit >= 1 ? Math.floor(fit) : fit);
+        viewX = 0;
+        viewY = 0;
+        viewChanged = true;
+    }
+
+    /**
+     * Zooms the viewport, keeping the tile under the given point of the canvas in place.
+     * @param factor how much to zoom in, below 1 to zoom out
+     * @param canvasX the x coordinate on the canvas to zoom around
+     * @param canvasY the y coordinate on the canvas to zoom around
+     */
+    public void zoom(double factor, double canvasX, double canvasY) {
+        double tileX = toTileX(canvasX);
+        double tileY = toTileY(canvasY);
+        zoom = clampZoom(zoom * factor);
+        viewX = tileX - canvasX / zoom;
+        viewY = tileY - canvasY / zoom;
+        viewChanged = true;
+    }
+
+    /**
+     * Moves the viewport.
+     * @param dx how far to move the map right on the canvas, in pixels
+     * @param dy how far to move the map down on the canvas, in pixels
+     */
+    public void pan(double dx, double dy) {
+        viewX -= dx / zoom;
+        viewY -= dy / zoom;
+        viewChanged = true;
+    }
+
+    private static double clampZoom(double zoom) {
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+    }
+
+    /**
+     * @param canvasX an x coordinate on the canvas
+     * @return the x coordinate of the tile drawn there, in tiles
+     */
+    public double toTileX(double canvasX) {
+        return viewX + canvasX / zoom;
+    }
+
+    /**
+     * @param canvasY a y coordinate on the canvas
+     * @return the y coordinate of the tile drawn there, in tiles
+     */
+    public double toTileY(double canvasY) {
+        return viewY + canvasY / zoom;
+    }
+
+    /**
+     * @return the number of pixels across a tile, below 1 when zoomed out
+     */
+    public double getZoom() {
+        return this.zoom;
+    }
+
+    /**
+     * Sets where render timings are recorded.
+     * @param metrics the metrics to record to
+     */
+    public void setMetrics(GenerationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private void paintTile(int x, int y, TileType type) {
+        double left = (x - viewX) * zoom;
+        double top = (y - viewY) * zoom;
+        gc.setFill(fill(type));
+        gc.fillRect(left, top, zoom, zoom);
+        gc.strokeRect(left, top, zoom, zoom);
+    }
+
+    /**
+     * @param type a TileType
+     * @return the color the given TileType is drawn with
+     */
+    static Color fill(TileType type) {
+        return FILLS[type.ordinal()];
+    }
+}
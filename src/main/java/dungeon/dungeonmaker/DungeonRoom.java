@@ -1,22 +1,78 @@
 package dungeon.dungeonmaker;
 
-import javafx.geometry.Point2D;
-
+/**
+ * A section of a dungeon that may or may not contain a room.
+ * Empty sections still have a center so corridors can pass through them.
+ */
 public class DungeonRoom {
     private boolean containsRoom;
-    private Point2D roomCenter;
-    private Point2D roomIndex;
+    private int centerX;
+    private int centerY;
+    private int indexX;
+    private int indexY;
+    private int originX;
+    private int originY;
+    private int width;
+    private int height;
 
     public DungeonRoom() {
         containsRoom = false;
-        roomCenter = new Point2D(0,0);
     }
 
+    /**
+     * Creates a copy of another room.
+     * @param other the room to copy
+     */
+    public DungeonRoom(DungeonRoom other) {
+        this.containsRoom = other.containsRoom;
+        this.centerX = other.centerX;
+        this.centerY = other.centerY;
+        this.indexX = other.indexX;
+        this.indexY = other.indexY;
+        this.originX = other.originX;
+        this.originY = other.originY;
+        this.width = other.width;
+        this.height = other.height;
+    }
+
+    public int getCenterX() { return this.centerX; }
+
+    public int getCenterY() { return this.centerY; }
 
-    public Point2D getRoomCenter() { return this.roomCenter; }
+    public int getIndexX() {
+        return indexX;
+    }
+
+    public int getIndexY() {
+        return indexY;
+    }
 
-    public Point2D getRoomIndex() {
-        return roomIndex;
+    /**
+     * @return the x coordinate of the room's top left tile
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    /**
+     * @return the y coordinate of the room's top left tile
+     */
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * @return the width of the room in tiles, 0 if there is no room
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the room in tiles, 0 if there is no room
+     */
+    public int getHeight() {
+        return height;
     }
 
     public boolean containsRoom() {
@@ -27,11 +83,27 @@ public class DungeonRoom {
         this.containsRoom = containsRoom;
     }
 
-    public void setRoomCenter(Point2D roomCenter) {
-        this.roomCenter = roomCenter;
+    public void setRoomCenter(int centerX, int centerY) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+    }
+
+    public void setRoomIndex(int indexX, int indexY) {
+        this.indexX = indexX;
+        this.indexY = indexY;
     }
 
-    public void setRoomIndex(Point2D roomIndex) {
-        this.roomIndex = roomIndex;
+    /**
+     * Sets the rectangle of floor the room covers.
+     * @param originX the x coordinate of the room's top left tile
+     * @param originY the y coordinate of the room's top left tile
+     * @param width the width of the room in tiles
+     * @param height the height of the room in tiles
+     */
+    public void setBounds(int originX, int originY, int width, int height) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
     }
 }
@@ -0,0 +1,302 @@
+package dungeon.dungeonmaker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dungeon.dungeonmaker.headless.DungeonJson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless HTTP service that generates dungeons on request, so other
+ * tools can use the generator without JavaFX.
+ * <p>
+ * {@code GET /dungeon?seed=1&width=60&height=30&sectionsX=4&sectionsY=2&format=binary}
+ * responds with the dungeon in the binary dungeon format, or as JSON with
+ * {@code format=json}. Every parameter is optional; without a seed a random
+ * one is picked, and the seed used is returned in the X-Dungeon-Seed header.
+ * Dungeons are checked and retried like those of BatchGenerator and
+ * DungeonCli, so a seed gives the same dungeon from all of them.
+ * Dungeons requested by seed are kept in a {@link DungeonCache}, so asking
+ * for the same one again skips generation.
+ * <p>
+ * Each request is handled on its own virtual thread. Memory, not request
+ * count, is what generation runs out of, so the server bounds the total
+ * tiles of the dungeons being generated at once rather than their number:
+ * a single dungeon may have up to MAX_TILES tiles, and a request that
+ * would take the tiles in flight past the limit is turned away straight
+ * away with 503 and a Retry-After header rather than queued, so an
+ * overloaded server keeps answering quickly.
+ * <p>
+ * The JDK server writes headers and body separately, so with Nagle's
+ * algorithm on, every keep-alive response waits out a delayed ACK.
+ * main turns it off with the sun.net.httpserver.nodelay property;
+ * code embedding the server should set that property itself.
+ */
+public class DungeonServer implements AutoCloseable {
+
+    // static final variables
+    public static final int DEFAULT_PORT = 8080;
+    public static final String PATH = "/dungeon";
+    private static final int BACKLOG = 1024;
+    public static final int MAX_TILES = 2048 * 2048;
+    // A dungeon takes about 3 bytes a tile while generating, so about 200 MiB
+    public static final int DEFAULT_MAX_TILES_IN_FLIGHT = 1 << 26;
+    private static final int DEFAULT_WIDTH = 60;
+    private static final int DEFAULT_HEIGHT = 30;
+
+    // Instance variables
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore tilesInFlight;
+    private final int maxTilesInFlight;
+    private final DungeonCache cache;
+    private final SplittableRandom seeds = new SplittableRandom();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor to instantiate a DungeonServer with a default sized cache,
+     * bound but not yet started.
+     * @param address the address to listen on, port 0 picks a free port
+     * @param maxTilesInFlight the most tiles of dungeons generated at once
+     * @throws IOException if the address cannot be bound
+     */
+    public DungeonServer(InetSocketAddress address, int maxTilesInFlight) throws IOException {
+        this(address, maxTilesInFlight, new DungeonCache());
+    }
+
+    /**
+     * Constructor to instantiate a new DungeonServer, bound but not yet started.
+     * @param address the address to listen on, port 0 picks a free port
+     * @param maxTilesInFlight the most tiles of dungeons generated at once
+     * @param cache where dungeons requested by seed are kept
+     * @throws IOException if the address cannot be bound
+     */
+    public DungeonServer(InetSocketAddress address, int maxTilesInFlight, DungeonCache cache)
+            throws IOException {
+        if (maxTilesInFlight <= 0) {
+            throw new IllegalArgumentException("Tile limit must be positive: " + maxTilesInFlight);
+        }
+        this.maxTilesInFlight = maxTilesInFlight;
+        this.cache = cache;
+        this.tilesInFlight = new Semaphore(maxTilesInFlight);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for those in progress to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendText(exchange, 405, "Only GET is supported");
+                return;
+            }
+
+            DungeonParameters parameters;
+            int tiles;
+            long seed;
+            boolean seeded;
+            boolean json;
+            try {
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                parameters = new DungeonParameters(
+                        intParameter(query, "width", DEFAULT_WIDTH),
+                        intParameter(query, "height", DEFAULT_HEIGHT),
+                        intParameter(query, "sectionsX", GridDungeon.DEFAULT_SECTIONS_X),
+                        intParameter(query, "sectionsY", GridDungeon.DEFAULT_SECTIONS_Y));
+                String seedValue = query.get("seed");
+                seeded = seedValue != null;
+                seed = seeded ? Long.parseLong(seedValue) : nextSeed();
+                json = isJson(query.getOrDefault("format", "binary"));
+                long size = (long) parameters.getWidth() * parameters.getHeight();
+                int limit = Math.min(MAX_TILES, maxTilesInFlight);
+                if (size > limit) {
+                    throw new IllegalArgumentException("Dungeons are limited to " + limit + " tiles");
+                }
+                tiles = (int) size;
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+
+            // A random seed will not be asked for again, so is not worth caching
+            byte[] encoded = seeded ? cache.getIfPresent(parameters, seed) : null;
+            if (encoded == null) {
+                // Back-pressure: refuse rather than queue once the tiles would not fit
+                if (!tilesInFlight.tryAcquire(tiles)) {
+                    rejected.increment();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendText(exchange, 503, "Too many dungeons in progress, try again shortly");
+                    return;
+                }
+                try {
+                    encoded = DungeonCache.generate(parameters, seed);
+                } catch (IllegalArgumentException e) {
+                    sendText(exchange, 400, e.getMessage());
+                    return;
+                } finally {
+                    tilesInFlight.release(tiles);
+                }
+                if (seeded) {
+                    cache.putValid(parameters, seed, encoded);
+                }
+            }
+
+            exchange.getResponseHeaders().set("X-Dungeon-Seed", Long.toString(seed));
+            if (json) {
+                // Made by DungeonFormat, here or in the cache, so the rows need no checking
+                DungeonSnapshot dungeon = DungeonReader.wrapValid(encoded).toSnapshot();
+                send(exchange, 200, "application/json",
+                        DungeonJson.encode(dungeon).getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 200, "application/octet-stream", encoded);
+            }
+            served.increment();
+        }
+    }
+
+    private synchronized long nextSeed() {
+        return seeds.nextLong();
+    }
+
+    private static boolean isJson(String format) {
+        switch (format) {
+            case "json":
+                return true;
+            case "binary":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not a number: " + value);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the most tiles of dungeons generated at once
+     */
+    public int getMaxTilesInFlight() {
+        return this.maxTilesInFlight;
+    }
+
+    /**
+     * @return the cache dungeons requested by seed are kept in
+     */
+    public DungeonCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * @return the number of dungeons sent back
+     */
+    public long getServedCount() {
+        return served.sum();
+    }
+
+    /**
+     * @return the number of requests turned away because the server was busy
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     * @param args the optional port, limit on tiles generated at once in
+     *             millions, and cache size in MiB
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        // Read once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxTilesInFlight = args.length > 1
+                ? Math.toIntExact(Long.parseLong(args[1]) * 1_000_000)
+                : DEFAULT_MAX_TILES_IN_FLIGHT;
+        long cacheBytes = args.length > 2
+                ? Long.parseLong(args[2]) << 20
+                : DungeonCache.DEFAULT_MAX_BYTES;
+        GenerationMetrics.getDefault().register();
+        DungeonServer server = new DungeonServer(
+                new InetSocketAddress(port), maxTilesInFlight, new DungeonCache(cacheBytes));
+        server.start();
+        System.out.println("Serving dungeons on http://localhost:" + server.getPort() + PATH
+                + " with up to " + maxTilesInFlight + " tiles generating at once");
+    }
+}
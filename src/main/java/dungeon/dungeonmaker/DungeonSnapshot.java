@@ -0,0 +1,105 @@
+package dungeon.dungeonmaker;
+
+/**
+ * Immutable copy of a finished dungeon.
+ * Safe to hand between threads and to keep after the
+ * GridDungeon it was taken from has been regenerated.
+ */
+public final class DungeonSnapshot implements TileGrid {
+
+    // Instance variables
+    private final long seed;
+    private final int sectionsX;
+    private final int sectionsY;
+    private final TileMap tileMap;
+    private final DungeonRoom[] rooms;
+    private final int startingRoom;
+
+    /**
+     * Constructor to instantiate a new DungeonSnapshot.
+     * The tiles and rooms are copied, so the originals may keep changing.
+     * @param seed the seed the dungeon was generated from
+     * @param sectionsX the number of room sections across
+     * @param sectionsY the number of room sections down
+     * @param tileMap the tiles of the dungeon
+     * @param rooms the rooms of the dungeon
+     * @param startingRoom the index of the starting room in rooms
+     */
+    public DungeonSnapshot(long seed, int sectionsX, int sectionsY,
+                           TileMap tileMap, DungeonRoom[] rooms, int startingRoom) {
+        this.seed = seed;
+        this.sectionsX = sectionsX;
+        this.sectionsY = sectionsY;
+        this.tileMap = new TileMap(tileMap);
+        this.rooms = new DungeonRoom[rooms.length];
+        for (int i = 0; i < rooms.length; i++) {
+            this.rooms[i] = new DungeonRoom(rooms[i]);
+        }
+        this.startingRoom = startingRoom;
+    }
+
+    /**
+     * @return the seed the dungeon was generated from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the number of room sections across
+     */
+    public int getSectionsX() {
+        return sectionsX;
+    }
+
+    /**
+     * @return the number of room sections down
+     */
+    public int getSectionsY() {
+        return sectionsY;
+    }
+
+    @Override
+    public int getWidth() {
+        return tileMap.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return tileMap.getHeight();
+    }
+
+    @Override
+    public TileType getType(int x, int y) {
+        return tileMap.getType(x, y);
+    }
+
+    /**
+     * @return the tiles of the dungeon, which callers must not change
+     */
+    TileMap getTileMap() {
+        return tileMap;
+    }
+
+    /**
+     * @return the number of room sections in the dungeon
+     */
+    public int getRoomCount() {
+        return rooms.length;
+    }
+
+    /**
+     * @param i the index of a room section, numbered row by row
+     * @return a copy of the room section at the given index
+     */
+    public DungeonRoom getRoom(int i) {
+        return new DungeonRoom(rooms[i]);
+    }
+
+    /**
+     * @return the index of the room the player starts in
+     */
+    public int getStartingRoomIndex() {
+        return startingRoom;
+    }
+}
@@ -0,0 +1,72 @@
+package dungeon.dungeonmaker;
+
+/**
+ * One step of dungeon generation, such as placing rooms or routing
+ * corridors, that takes a dungeon state and returns it, usually changed.
+ * <p>
+ * Stages are chained into a {@link DungeonPipeline}. A stage is only ever
+ * called from one thread at a time, but in batch mode it works on one
+ * dungeon while the stages before and after it work on others, so it
+ * must not share mutable state with other stages.
+ */
+@FunctionalInterface
+public interface DungeonStage {
+
+    /**
+     * @param state the dungeon to work on
+     * @return the state to hand to the next stage
+     */
+    DungeonState apply(DungeonState state);
+
+    /**
+     * @return a stage that resets the map to wall and restarts the random stream
+     */
+    static DungeonStage initMap() {
+        return state -> {
+            state.getDungeon().initMap();
+            return state;
+        };
+    }
+
+    /**
+     * @return a stage that places the rooms
+     */
+    static DungeonStage createRooms() {
+        return state -> {
+            state.getDungeon().createRooms();
+            return state;
+        };
+    }
+
+    /**
+     * @return a stage that connects the rooms with corridors
+     */
+    static DungeonStage connectRooms() {
+        return state -> {
+            state.getDungeon().connectRooms();
+            return state;
+        };
+    }
+
+    /**
+     * @return a stage that checks which rooms can be reached from the start
+     */
+    static DungeonStage validate() {
+        return state -> {
+            state.setReachability(state.getDungeon().validate());
+            return state;
+        };
+    }
+
+    /**
+     * The placer's settings must not be changed while the stage is in use.
+     * @param placer the placer to place items with
+     * @return a stage that places items in the rooms
+     */
+    static DungeonStage placeItems(ItemPlacer placer) {
+        return state -> {
+            state.setItems(placer.place(state.getDungeon().snapshot()));
+            return state;
+        };
+    }
+}
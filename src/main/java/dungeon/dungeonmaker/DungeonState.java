@@ -0,0 +1,59 @@
+package dungeon.dungeonmaker;
+
+/**
+ * A dungeon on its way through a DungeonPipeline, along with what the
+ * stages so far have worked out about it.
+ * <p>
+ * A state is only ever handled by one stage at a time, and is handed
+ * between stages through blocking queues, so it needs no locking.
+ */
+public final class DungeonState {
+
+    // Instance variables
+    private final GridDungeon dungeon;
+    private ItemLayout items;
+    private Reachability reachability;
+
+    /**
+     * Constructor to instantiate a new DungeonState.
+     * @param dungeon the dungeon the stages generate into
+     */
+    public DungeonState(GridDungeon dungeon) {
+        this.dungeon = dungeon;
+    }
+
+    /**
+     * @return the dungeon the stages generate into
+     */
+    public GridDungeon getDungeon() {
+        return dungeon;
+    }
+
+    /**
+     * @return the items placed in the dungeon, or null if none were placed
+     */
+    public ItemLayout getItems() {
+        return items;
+    }
+
+    /**
+     * @param items the items placed in the dungeon
+     */
+    public void setItems(ItemLayout items) {
+        this.items = items;
+    }
+
+    /**
+     * @return which rooms can be reached, or null if the dungeon was not validated
+     */
+    public Reachability getReachability() {
+        return reachability;
+    }
+
+    /**
+     * @param reachability which rooms can be reached
+     */
+    public void setReachability(Reachability reachability) {
+        this.reachability = reachability;
+    }
+}
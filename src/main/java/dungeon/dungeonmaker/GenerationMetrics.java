@@ -0,0 +1,144 @@
+package dungeon.dungeonmaker;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters for dungeon generation and rendering.
+ * All recording is lock-free, so one instance can be shared by every
+ * generator thread. The default instance can be published over JMX.
+ */
+public class GenerationMetrics implements GenerationMetricsMXBean {
+
+    // static final variables
+    public static final String OBJECT_NAME = "dungeon.dungeonmaker:type=GenerationMetrics";
+    private static final GenerationMetrics DEFAULT = new GenerationMetrics();
+
+    // Instance variables
+    private final LatencyHistogram initMap = new LatencyHistogram();
+    private final LatencyHistogram createRooms = new LatencyHistogram();
+    private final LatencyHistogram connectRooms = new LatencyHistogram();
+    private final LatencyHistogram corridorRoute = new LatencyHistogram();
+    private final LatencyHistogram validate = new LatencyHistogram();
+    private final LatencyHistogram render = new LatencyHistogram();
+    private final LongAdder dungeonsGenerated = new LongAdder();
+    private final LongAdder roomsGenerated = new LongAdder();
+    private final LongAdder corridorTilesCarved = new LongAdder();
+    private final LongAdder disconnectedRetries = new LongAdder();
+
+    /**
+     * @return the instance every dungeon records to unless told otherwise
+     */
+    public static GenerationMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server.
+     * Does nothing if they are already published.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already published
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public LatencyHistogram getInitMap() {
+        return initMap;
+    }
+
+    @Override
+    public LatencyHistogram getCreateRooms() {
+        return createRooms;
+    }
+
+    @Override
+    public LatencyHistogram getConnectRooms() {
+        return connectRooms;
+    }
+
+    @Override
+    public LatencyHistogram getCorridorRoute() {
+        return corridorRoute;
+    }
+
+    @Override
+    public LatencyHistogram getValidate() {
+        return validate;
+    }
+
+    @Override
+    public LatencyHistogram getRender() {
+        return render;
+    }
+
+    @Override
+    public long getDungeonsGenerated() {
+        return dungeonsGenerated.sum();
+    }
+
+    @Override
+    public long getRoomsGenerated() {
+        return roomsGenerated.sum();
+    }
+
+    @Override
+    public long getCorridorTilesCarved() {
+        return corridorTilesCarved.sum();
+    }
+
+    @Override
+    public long getDisconnectedRetries() {
+        return disconnectedRetries.sum();
+    }
+
+    /**
+     * Counts one finished dungeon.
+     */
+    void dungeonGenerated() {
+        dungeonsGenerated.increment();
+    }
+
+    /**
+     * @param rooms the number of rooms just generated
+     */
+    void roomsGenerated(int rooms) {
+        roomsGenerated.add(rooms);
+    }
+
+    /**
+     * @param tiles the number of wall tiles just carved into corridor
+     */
+    void corridorTilesCarved(int tiles) {
+        corridorTilesCarved.add(tiles);
+    }
+
+    /**
+     * Counts one dungeon thrown away because not every room was reachable.
+     */
+    void disconnectedRetry() {
+        disconnectedRetries.increment();
+    }
+
+    @Override
+    public void reset() {
+        initMap.reset();
+        createRooms.reset();
+        connectRooms.reset();
+        corridorRoute.reset();
+        validate.reset();
+        render.reset();
+        dungeonsGenerated.reset();
+        roomsGenerated.reset();
+        corridorTilesCarved.reset();
+        disconnectedRetries.reset();
+    }
+}
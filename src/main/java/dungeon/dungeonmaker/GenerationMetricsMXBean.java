@@ -0,0 +1,29 @@
+package dungeon.dungeonmaker;
+
+/**
+ * JMX view of {@link GenerationMetrics}.
+ */
+public interface GenerationMetricsMXBean {
+
+    LatencyHistogram getInitMap();
+
+    LatencyHistogram getCreateRooms();
+
+    LatencyHistogram getConnectRooms();
+
+    LatencyHistogram getCorridorRoute();
+
+    LatencyHistogram getValidate();
+
+    LatencyHistogram getRender();
+
+    long getDungeonsGenerated();
+
+    long getRoomsGenerated();
+
+    long getCorridorTilesCarved();
+
+    long getDisconnectedRetries();
+
+    void reset();
+}
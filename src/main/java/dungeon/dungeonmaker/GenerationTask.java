@@ -0,0 +1,53 @@
+package dungeon.dungeonmaker;
+
+import javafx.concurrent.Task;
+
+/**
+ * Runs the stages of a DungeonPipeline on a GridDungeon off the JavaFX
+ * application thread, reporting progress after each stage and stopping
+ * early when cancelled. The result is an immutable snapshot for the UI
+ * to render.
+ */
+public class GenerationTask extends Task<DungeonSnapshot> {
+
+    // Instance variables
+    private final GridDungeon dungeon;
+    private final DungeonPipeline pipeline;
+
+    /**
+     * Constructor to instantiate a new GenerationTask.
+     * The dungeon must not be touched by any other thread until the task is done.
+     * @param dungeon the dungeon to generate into
+     * @param pipeline the stages to run on the dungeon
+     */
+    public GenerationTask(GridDungeon dungeon, DungeonPipeline pipeline) {
+        this.dungeon = dungeon;
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    protected DungeonSnapshot call() {
+        int stages = pipeline.getStageCount();
+        updateProgress(0, stages);
+
+        DungeonState state = new DungeonState(dungeon);
+        for (int i = 0; i < stages; i++) {
+            updateMessage(pipeline.getStageName(i) + "...");
+            state = pipeline.runStage(i, state);
+            updateProgress(i + 1, stages);
+            if (isCancelled()) {
+                return null;
+            }
+        }
+
+        updateMessage("Seed " + dungeon.getSeed());
+        return dungeon.snapshot();
+    }
+
+    /**
+     * @return the dungeon this task generates into
+     */
+    public GridDungeon getDungeon() {
+        return dungeon;
+    }
+}
@@ -1,29 +1,45 @@
 package dungeon.dungeonmaker;
 
-import javafx.geometry.Point2D;
-import javafx.scene.layout.Pane;
-import javafx.scene.shape.Rectangle;
-import javafx.util.Pair;
-
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
 
 /**
- * Represents a dungeon made of a 4x2 grid of rooms
- * connected by corridors.
+ * Represents a dungeon made of a grid of room sections
+ * connected by corridors. Each section holds at most one room.
  * @author bainrow
  */
 public class GridDungeon extends Dungeon {
 
-    // Direction vectors
-    static int[] dRow = { -1, 0, 1, 0 };
-    static int[] dCol = { 0, 1, 0, -1 };
+    // static final variables
+    public static final int DEFAULT_SECTIONS_X = 4;
+    public static final int DEFAULT_SECTIONS_Y = 2;
+    private static final int MIN_ROOM_SIZE = 5;
+    private static final int MAX_ROOM_SIZE = 11;
+    private static final int MIN_SECTION_SIZE = 3;
+    // Maps at least this big generate their sections on all cores by default
+    public static final int PARALLEL_MIN_TILES = 512 * 512;
+    // Salt keeping retry seeds apart from the room streams, which are derived by section
+    private static final long RETRIES = -2;
 
     // Instance variables
     private final DungeonRoom[] dungeonRooms;
-    private final DungeonRoom[][] dungeonRoomGrid;
-    private int totalRooms;
-    private Point2D startingRoom;
-    private Node linkedDungeonRooms;
+    private int[] connectionStarts;
+    private int[] connectionEnds;
+    private int numConnections;
+    private int startingRoomNum;
+    private final CorridorRouter corridorRouter = new CorridorRouter();
+    private boolean parallel;
+    private ReachabilityValidator validator;
+    private long seed;
+    private SplitMixRandom random;
+    private GenerationMetrics metrics = GenerationMetrics.getDefault();
+
+    // Section layout
+    private final int sectionsX;
+    private final int sectionsY;
 
     // Derived values from mapSize
     private final int roomSectionX;
@@ -31,425 +47,754 @@ public class GridDungeon extends Dungeon {
 
     /**
      * Constructor to instantiate a new GridDungeon
-     * @param dungeonPane layout pane in which the dungeon
-     *                    will be displayed on the GUI.
+     * with a randomly chosen seed.
      * @param x the width of the dungeon
      * @param y the height of the dungeon
      */
-    public GridDungeon(Pane dungeonPane, int x, int y) {
-        this.tileMap = new DungeonTile[x][y];
+    public GridDungeon(int x, int y) {
+        this(x, y, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor to instantiate a new GridDungeon
+     * with the default 4x2 section layout.
+     * @param x the width of the dungeon
+     * @param y the height of the dungeon
+     * @param seed the seed the dungeon is generated from
+     */
+    public GridDungeon(int x, int y, long seed) {
+        this(x, y, DEFAULT_SECTIONS_X, DEFAULT_SECTIONS_Y, seed);
+    }
+
+    /**
+     * Constructor to instantiate a new GridDungeon
+     * @param x the width of the dungeon
+     * @param y the height of the dungeon
+     * @param sectionsX the number of room sections across
+     * @param sectionsY the number of room sections down
+     * @param seed the seed the dungeon is generated from
+     */
+    public GridDungeon(int x, int y, int sectionsX, int sectionsY, long seed) {
+        if (sectionsX <= 0 || sectionsY <= 0) {
+            throw new IllegalArgumentException(
+                    "Section layout must be positive: " + sectionsX + "x" + sectionsY);
+        }
+        if (x / sectionsX < MIN_SECTION_SIZE || y / sectionsY < MIN_SECTION_SIZE) {
+            throw new IllegalArgumentException(
+                    "Sections of a " + x + "x" + y + " map split " + sectionsX + "x" + sectionsY
+                            + " would be smaller than " + MIN_SECTION_SIZE + " tiles");
+        }
+        this.seed = seed;
+        this.tileMap = new TileMap(x, y);
         this.mapSizeX = x;
         this.mapSizeY = y;
-        this.roomSectionX = x/4;
-        this.roomSectionY = y/2;
-        this.tileSize = Controller.DUNGEON_SIZE_X / x;
-        this.dungeonPane = dungeonPane;
-        dungeonRooms = new DungeonRoom[8];
-        dungeonRoomGrid = new DungeonRoom[4][2];
+        this.sectionsX = sectionsX;
+        this.sectionsY = sectionsY;
+        this.roomSectionX = x / sectionsX;
+        this.roomSectionY = y / sectionsY;
+        dungeonRooms = new DungeonRoom[Math.multiplyExact(sectionsX, sectionsY)];
+        this.parallel = (long) x * y >= PARALLEL_MIN_TILES;
         initMap();
     }
 
     /**
-     * Initializes the dungeon map with empty tiles and rooms.
+     * Constructor to instantiate a copy of another GridDungeon, which can be
+     * generated into without changing the original. The copy continues from
+     * the same point in the random stream, so it generates what the original
+     * would have. Metrics are still recorded to the original's.
+     * @param other the dungeon to copy
+     */
+    public GridDungeon(GridDungeon other) {
+        this.seed = other.seed;
+        this.tileMap = new TileMap(other.tileMap);
+        this.mapSizeX = other.mapSizeX;
+        this.mapSizeY = other.mapSizeY;
+        this.sectionsX = other.sectionsX;
+        this.sectionsY = other.sectionsY;
+        this.roomSectionX = other.roomSectionX;
+        this.roomSectionY = other.roomSectionY;
+        this.dungeonRooms = new DungeonRoom[other.dungeonRooms.length];
+        for (int i = 0; i < dungeonRooms.length; i++) {
+            dungeonRooms[i] = new DungeonRoom(other.dungeonRooms[i]);
+        }
+        if (other.connectionStarts != null) {
+            this.connectionStarts = other.connectionStarts.clone();
+            this.connectionEnds = other.connectionEnds.clone();
+        }
+        this.numConnections = other.numConnections;
+        this.startingRoomNum = other.startingRoomNum;
+        this.corridorRouter.setCosts(other.getWallCost(), other.getFloorCost());
+        this.parallel = other.parallel;
+        this.random = other.random.copy();
+        this.metrics = other.metrics;
+    }
+
+    /**
+     * Initializes the dungeon map with empty tiles and rooms,
+     * and restarts the random stream from the seed.
      */
     @Override
     public void initMap() {
-        // Initialize the tileMap
-        for (int x = 0; x < mapSizeX; x++) {
-            for (int y = 0; y < mapSizeY; y++) {
-                tileMap[x][y] = new DungeonTile(
-                        new Rectangle(tileSize,tileSize),
-                        new Point2D(x * tileSize, y * tileSize),
-                        DungeonTile.TileType.WALL);
-            }
-        }
+        long start = System.nanoTime();
 
-        // Initialize the rooms
-        for (int i = 0; i < 8; i++) {
+        // Every generation gets its own stream, so the same seed
+        // always produces the same dungeon
+        random = new SplitMixRandom(seed);
+
+        // Reset the tileMap to solid wall
+        tileMap.fill(TileType.WALL);
+
+        // Initialize the rooms, numbered row by row
+        for (int i = 0; i < dungeonRooms.length; i++) {
             dungeonRooms[i] = new DungeonRoom();
+            dungeonRooms[i].setRoomIndex(i % sectionsX, i / sectionsX);
         }
+        metrics.getInitMap().record(System.nanoTime() - start);
     }
 
     /**
-     * Populates the tileMap with 3-7 rooms.
+     * Populates between half and all but one of the sections with rooms.
      * Decides randomly which rooms in the dungeonRooms array
      * to populate, then calls generateRoom for each of those rooms.
+     * <p>
+     * Each room is drawn from its own stream, derived from the seed and
+     * its section, and only touches its own section, so the rooms can be
+     * generated in any order, or in parallel, with the same result.
      */
     public void createRooms() {
-        // Random number of rooms 3-7
-        int randomNumRooms = (int)(Math.random() * 4 + 4);
-        totalRooms = randomNumRooms;
+        long start = System.nanoTime();
+        int sections = dungeonRooms.length;
+        int randomNumRooms = Math.max(1, sections / 2 + random.nextInt(Math.max(1, sections - sections / 2)));
 
         // Randomly select the rooms to generate
-        List<Integer> randInts = new ArrayList<>();
-        for (int i = 0; i < 8; i++) {
-            randInts.add(i);
-        }
-        Collections.shuffle(randInts);
-
-        // Generate the rooms
-        for (int i = 0; i < randomNumRooms; i++) {
-            int currentRoom = randInts.get(i);
-            generateRoom(currentRoom);
-        }
-
-        // Add centers for the missing rooms
-        for (int i = randomNumRooms; i < 8; i++) {
-            int currRoom = randInts.get(i);
-            Point2D center;
-            int roomXOffset, roomYOffset = 0;
-            if (currRoom % 2 != 0) {
-                roomXOffset = (currRoom - 1) / 2;
-                roomYOffset = roomSectionY;
-            } else {
-                roomXOffset = currRoom / 2;
-            }
-
-            // Set the center
-            center = new Point2D(
-                    (int) ((roomSectionX * roomXOffset) + (double) (roomSectionX / 2)),
-                    (int) (roomYOffset + (double) roomSectionY / 2));
-            // Store center of room
-            dungeonRooms[currRoom].setRoomCenter(center);
-            tileMap[(int) center.getX()][(int) center.getY()].setType(DungeonTile.TileType.CENTER);
+        int[] randInts = new int[sections];
+        for (int i = 0; i < sections; i++) {
+            randInts[i] = i;
         }
+        shuffle(randInts);
 
-        // transform dungeon rooms into a 4x2
-        for (int i = 0; i < 8; i++) {
-            if (i % 2 == 0) {
-                dungeonRoomGrid[i / 2][0] = dungeonRooms[i];
-                dungeonRoomGrid[i / 2][0].setRoomIndex(new Point2D((double) i / 2, 0));
+        // Generate the rooms, and add centers for the missing rooms
+        IntStream order = IntStream.range(0, sections);
+        (parallel ? order.parallel() : order).forEach(i -> {
+            if (i < randomNumRooms) {
+                generateRoom(randInts[i], new SplittableRandom(Seeds.derive(seed, randInts[i])));
             } else {
-                dungeonRoomGrid[(i - 1) / 2][1] = dungeonRooms[i];
-                dungeonRoomGrid[(i - 1) / 2][1].setRoomIndex(new Point2D((double) (i - 1) / 2, 1));
+                DungeonRoom room = dungeonRooms[randInts[i]];
+                int centerX = sectionOriginX(room) + roomSectionX / 2;
+                int centerY = sectionOriginY(room) + roomSectionY / 2;
+                room.setRoomCenter(centerX, centerY);
+                stampRoom(room);
             }
-        }
+        });
 
         // Set starting room
-        int startingRoomNum = randInts.get(0);
-        if (startingRoomNum % 2 == 0) {
-            startingRoom = new Point2D((double) startingRoomNum / 2, 0);
-        } else {
-            startingRoom = new Point2D((double) (startingRoomNum - 1) / 2, 1);
-        }
+        startingRoomNum = randInts[0];
 
-        // Create linkedList of rooms
-        Node[][] visited = new Node[4][2];
-        linkedDungeonRooms = construct(dungeonRoomGrid, 0, 0, 4, 2, visited);
+        metrics.roomsGenerated(randomNumRooms);
+        metrics.getCreateRooms().record(System.nanoTime() - start);
     }
 
     /**
      * Generates a room at the given roomNum.
      * @param roomNum the number room in dungeonRooms
      *                to generate.
+     * @param random the stream the room is drawn from
      */
-    private void generateRoom(int roomNum) {
-        // Set x/y offset according to the room number
-        int roomXOffset, roomYOffset = 0;
-        if (roomNum % 2 != 0) {
-            roomXOffset = (roomNum - 1) / 2;
-            roomYOffset = roomSectionY;
-        } else {
-            roomXOffset = roomNum / 2;
-        }
+    private void generateRoom(int roomNum, RandomGenerator random) {
+        DungeonRoom room = dungeonRooms[roomNum];
 
-        // Get a random x/y size between 5-10 blocks for the room
-        int randomXSize = (int)(Math.random() * 7 + 5);
-        int randomYSize = (int)(Math.random() * 7 + 5);
+        // Get a random x/y size for the room that fits inside its section
+        int randomXSize = randomRoomSize(roomSectionX, random);
+        int randomYSize = randomRoomSize(roomSectionY, random);
 
         // Get the max coordinate at which a room may start generating
-        Point2D max = new Point2D(
-                roomSectionX - 1 - randomXSize,
-                roomSectionY - 1 - randomYSize);
+        int maxX = roomSectionX - 1 - randomXSize;
+        int maxY = roomSectionY - 1 - randomYSize;
         // From the max, randomly decide the origin of the room
-        Point2D origin = new Point2D(
-                (int)(Math.random() * max.getX() + 1),
-                (int)(Math.random() * max.getY() + 1));
+        int originX = sectionOriginX(room) + 1 + random.nextInt(Math.max(1, maxX));
+        int originY = sectionOriginY(room) + 1 + random.nextInt(Math.max(1, maxY));
 
         // Set the center
-        Point2D center = new Point2D(
-                (roomSectionX * roomXOffset) + (int)(origin.getX() + randomXSize / 2),
-                roomYOffset + (int)(origin.getY() + randomYSize / 2));
-
-        // Store center of room, set containsRoom, and set room index
-        dungeonRooms[roomNum].setRoomCenter(center);
-        dungeonRooms[roomNum].setContainsRoom(true);
-
-        // Fill the coords of the room graphically
-        for (int x = 0; x < randomXSize; x++) {
-            for (int y = 0; y < randomYSize; y++) {
-                int xCoord = (roomSectionX * roomXOffset) + (int)origin.getX() + x;
-                int yCoord = (int)origin.getY() + y + roomYOffset;
-                // if center, instead it as center
-                if (xCoord == center.getX() && yCoord == center.getY()) {
-                    tileMap[xCoord][yCoord].setType(DungeonTile.TileType.CENTER);
-                } else {
-                    tileMap[xCoord][yCoord].setType(DungeonTile.TileType.FLOOR);
-                }
-            }
-        }
+        int centerX = originX + randomXSize / 2;
+        int centerY = originY + randomYSize / 2;
+
+        // Store center and bounds of room and set containsRoom
+        room.setRoomCenter(centerX, centerY);
+        room.setBounds(originX, originY, randomXSize, randomYSize);
+        room.setContainsRoom(true);
+        stampRoom(room);
     }
 
-    public void connectRooms() {
-        // Create a list of connected nodes
-        ArrayList<Node> connectedNodes = new ArrayList<>();
-        Queue<Node> roomQueue = new LinkedList<>();
-        ArrayList<Pair<Node, Node>> connections = new ArrayList<>();
-        int totalRoomsConnected = 1;
-
-        // Find the room node associated with the starting room
-        System.out.println(startingRoom);
-        Node startRoomNode = linkedDungeonRooms;
-        for (int x = 0; x < startingRoom.getX(); x++) {
-            startRoomNode = startRoomNode.right;
+    /**
+     * Fills the coords of the room, if there is one, then marks its center.
+     * @param room the room to draw into the tileMap
+     */
+    private void stampRoom(DungeonRoom room) {
+        if (room.containsRoom()) {
+            tileMap.fillRect(room.getOriginX(), room.getOriginY(),
+                    room.getWidth(), room.getHeight(), TileType.FLOOR);
         }
-        for (int y = 0; y < startingRoom.getY(); y++) {
-            startRoomNode = startRoomNode.down;
+        tileMap.setType(room.getCenterX(), room.getCenterY(), TileType.CENTER);
+    }
+
+    /**
+     * Regenerates the room in one section and re-routes the corridors
+     * around it, leaving the rest of the dungeon untouched.
+     * <p>
+     * Every corridor joins the centers of two adjacent sections and never
+     * leaves those two sections. Only the block of sections around the
+     * regenerated one is rebuilt: it is reset to wall, its rooms are
+     * redrawn, and every corridor with an end in the block, which are all
+     * the corridors that had tiles in it, is carved again. Corridors that
+     * do not touch the block keep their tiles, so every room stays joined
+     * to its neighbours. When all tiles cost the same, as they do by
+     * default, a corridor only depends on its two ends, so corridors
+     * reaching out of the block retrace their old path outside it and no
+     * tile outside the block changes. With dearer walls such a corridor
+     * may take a new way through the section it reaches into, so tiles
+     * can also change in the ring of sections around the block, and never
+     * further out, whatever the costs.
+     * <p>
+     * The new room is drawn from the dungeon's random stream, so after
+     * this the seed alone no longer reproduces the dungeon.
+     * @param section the index of the section, numbered row by row
+     * @return the tiles whose type changed
+     */
+    public TileChanges regenerateRoom(int section) {
+        DungeonRoom room = dungeonRooms[section];
+        if (!room.containsRoom()) {
+            throw new IllegalArgumentException("Section " + section + " has no room to regenerate");
         }
 
-        // Starting from the start room, continually find adj rooms
-        connectedNodes.add(startRoomNode);
-        roomQueue.add(startRoomNode);
-        while(!roomQueue.isEmpty()) {
-            Node currNode = roomQueue.remove();
-            int roomsConnected = findAdjRooms(currNode, connectedNodes, roomQueue, connections,false);
-            totalRoomsConnected += roomsConnected;
-            if(roomsConnected == 0 && totalRoomsConnected < totalRooms) {
-                findAdjRooms(currNode, connectedNodes, roomQueue, connections, true);
+        // The block of sections around the regenerated one
+        int minSectionX = Math.max(0, room.getIndexX() - 1);
+        int minSectionY = Math.max(0, room.getIndexY() - 1);
+        int maxSectionX = Math.min(sectionsX - 1, room.getIndexX() + 1);
+        int maxSectionY = Math.min(sectionsY - 1, room.getIndexY() + 1);
+        int blockX = minSectionX * roomSectionX;
+        int blockY = minSectionY * roomSectionY;
+        int blockWidth = (maxSectionX - minSectionX + 1) * roomSectionX;
+        int blockHeight = (maxSectionY - minSectionY + 1) * roomSectionY;
+
+        // The sections whose tiles may change
+        int reach = corridorRouter.hasUniformCost() ? 1 : 2;
+        int changedX = Math.max(0, room.getIndexX() - reach) * roomSectionX;
+        int changedY = Math.max(0, room.getIndexY() - reach) * roomSectionY;
+        int changedWidth = (Math.min(sectionsX - 1, room.getIndexX() + reach) + 1) * roomSectionX - changedX;
+        int changedHeight = (Math.min(sectionsY - 1, room.getIndexY() + reach) + 1) * roomSectionY - changedY;
+        TileMap before = tileMap.copyRect(changedX, changedY, changedWidth, changedHeight);
+
+        // Reset the block, then draw its rooms, including the new one
+        tileMap.fillRect(blockX, blockY, blockWidth, blockHeight, TileType.WALL);
+        generateRoom(section, random);
+        for (int y = minSectionY; y <= maxSectionY; y++) {
+            for (int x = minSectionX; x <= maxSectionX; x++) {
+                if (y * sectionsX + x != section) {
+                    stampRoom(dungeonRooms[y * sectionsX + x]);
+                }
             }
         }
-        // Remove connections that go nowhere
-        // Put connections incoming to non-rooms in a HashMap
-        HashMap<Node, Integer> numNonRoomIncoming = new HashMap<>();
-        ArrayList<Node> incomingNodes = new ArrayList<>();
-        for (Pair<Node, Node> connection: connections) {
-            Node end = connection.getValue();
-            if (!end.data.containsRoom()) {
-                if (numNonRoomIncoming.containsKey(end)) {
-                    int prev = numNonRoomIncoming.get(end);
-                    numNonRoomIncoming.put(end, prev + 1);
-                } else {
-                    numNonRoomIncoming.put(end, 1);
-                }
+
+        // Carve every corridor with an end in the block again
+        for (int i = 0; i < numConnections; i++) {
+            DungeonRoom start = dungeonRooms[connectionStarts[i]];
+            DungeonRoom end = dungeonRooms[connectionEnds[i]];
+            if (inBlock(start, minSectionX, minSectionY, maxSectionX, maxSectionY)
+                    || inBlock(end, minSectionX, minSectionY, maxSectionX, maxSectionY)) {
+                carveConnection(corridorRouter, i);
             }
-            incomingNodes.add(connection.getKey());
         }
-        // Delete any connections that are dead ends in the HashMap
-        ArrayList<Point2D> remove = new ArrayList<>();
-        for (Node nonRoomPoint: numNonRoomIncoming.keySet()) {
-            if (!incomingNodes.contains(nonRoomPoint)) {
-                remove.add(nonRoomPoint.data.getRoomCenter());
+
+        // Report the tiles that differ from before
+        TileChanges changes = new TileChanges();
+        for (int y = 0; y < changedHeight; y++) {
+            for (int x = 0; x < changedWidth; x++) {
+                if (before.getType(x, y) != tileMap.getType(changedX + x, changedY + y)) {
+                    changes.add(changedX + x, changedY + y);
+                }
             }
         }
+        return changes;
+    }
+
+    private static boolean inBlock(DungeonRoom room, int minX, int minY, int maxX, int maxY) {
+        return room.getIndexX() >= minX && room.getIndexX() <= maxX
+                && room.getIndexY() >= minY && room.getIndexY() <= maxY;
+    }
 
-        // Check if
-        if (totalRoomsConnected < totalRooms) {
-            System.out.println("fuck");
+    /**
+     * @param x the x coordinate of a tile
+     * @param y the y coordinate of a tile
+     * @return the index of the section holding the tile,
+     *         or -1 if the tile is in the margin outside every section
+     */
+    public int getSectionAt(int x, int y) {
+        int sectionX = x / roomSectionX;
+        int sectionY = y / roomSectionY;
+        if (x < 0 || y < 0 || sectionX >= sectionsX || sectionY >= sectionsY) {
+            return -1;
         }
+        return sectionY * sectionsX + sectionX;
+    }
 
-        for (Pair<Node, Node> connection: connections) {
-            Point2D start = connection.getKey().data.getRoomCenter();
-            Point2D end = connection.getValue().data.getRoomCenter();
-            if (remove.contains(end)) {
-                continue;
+    /**
+     * Picks a room size between 5 and 11 tiles, shrunk so
+     * that the room keeps a wall on each side of its section.
+     * @param sectionSize the size of the section along the same axis
+     * @param random the stream the size is drawn from
+     * @return the size of the room
+     */
+    private static int randomRoomSize(int sectionSize, RandomGenerator random) {
+        int max = Math.min(MAX_ROOM_SIZE, sectionSize - 2);
+        int min = Math.min(MIN_ROOM_SIZE, max);
+        return random.nextInt(min, max + 1);
+    }
+
+    /**
+     * Connects the rooms with corridors, so that every room
+     * can be reached from every other room.
+     * @throws CancellationException if the thread is interrupted
+     */
+    public void connectRooms() {
+        long begin = System.nanoTime();
+        planConnections();
+        if (parallel) {
+            connectInWaves();
+        } else {
+            for (int i = 0; i < numConnections; i++) {
+                // Corridor routing is the long phase, so let it be abandoned
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Corridor routing was interrupted");
+                }
+                carveConnection(corridorRouter, i);
             }
-            BFS(start, end);
         }
+        metrics.dungeonGenerated();
+        metrics.getConnectRooms().record(System.nanoTime() - begin);
     }
 
-    private int findAdjRooms(
-            Node root,
-            ArrayList<Node> connectedNodes,
-            Queue<Node> roomQueue,
-            ArrayList<Pair<Node, Node>> connections,
-            boolean emptyAllowed) {
-        boolean foundRoom = false;
-        int roomsConnected = 0;
-
-        // Either bias leftward or rightward depending on room index
-        ArrayList<Node> adjNodes = new ArrayList<>();
-        if (root.data.getRoomIndex().getX() < 2) {
-            adjNodes.addAll(Arrays.asList(
-                    root.up, root.right, root.down, root.left));
-        } else {
-            adjNodes.addAll(Arrays.asList(
-                    root.up, root.left, root.down, root.right));
+    /**
+     * Carves the planned corridors in parallel, with the same result as
+     * carving them one by one in order.
+     * <p>
+     * A corridor only reads and writes the two sections it joins, so it
+     * only depends on the earlier corridors sharing one of its sections.
+     * Each corridor goes in the wave after the latest of those, so no two
+     * corridors in a wave share a section, and every corridor sees exactly
+     * the tiles it would have seen in order.
+     * <p>
+     * Workers borrow routers from a pool that only lives as long as this
+     * call, so no scratch buffers stay behind on pool threads afterwards.
+     */
+    private void connectInWaves() {
+        int[] sectionWave = new int[dungeonRooms.length];
+        Arrays.fill(sectionWave, -1);
+        int[] waveStart = new int[numConnections + 1];
+        int[] connectionWave = new int[numConnections];
+        int numWaves = 0;
+        for (int i = 0; i < numConnections; i++) {
+            int a = connectionStarts[i];
+            int b = connectionEnds[i];
+            int wave = Math.max(sectionWave[a], sectionWave[b]) + 1;
+            sectionWave[a] = wave;
+            sectionWave[b] = wave;
+            connectionWave[i] = wave;
+            waveStart[wave + 1]++;
+            numWaves = Math.max(numWaves, wave + 1);
         }
 
-        if (!emptyAllowed) {
-            // Go through all the adjNodes and add adj rooms
-            for (Node currAdjNode: adjNodes) {
-                // check that the node is not out of bounds
-                if (currAdjNode != null) {
-                    // If not on the list of current connected nodes, add it and return
-                    if (!connectedNodes.contains(currAdjNode) && (currAdjNode.data.containsRoom())) {
-                        connectedNodes.add(currAdjNode);
-                        roomQueue.add(currAdjNode);
-                        connections.add(new Pair<>(root, currAdjNode));
-                        roomsConnected++;
-                    }
-                }
+        // Counting sort of the connections by wave
+        for (int w = 0; w < numWaves; w++) {
+            waveStart[w + 1] += waveStart[w];
+        }
+        int[] byWave = new int[numConnections];
+        int[] fill = Arrays.copyOf(waveStart, numWaves);
+        for (int i = 0; i < numConnections; i++) {
+            byWave[fill[connectionWave[i]]++] = i;
+        }
+
+        Queue<CorridorRouter> routers = new ConcurrentLinkedQueue<>();
+        for (int w = 0; w < numWaves; w++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Corridor routing was interrupted");
             }
-        } else {
-            // Go through enough adjNodes to find one empty room
-            for (Node currAdjNode: adjNodes) {
-                // check that the node is not out of bounds
-                if (currAdjNode != null) {
-                    // If not on the list of current connected nodes, add it and return
-                    if (!connectedNodes.contains(currAdjNode)) {
-                        connectedNodes.add(currAdjNode);
-                        roomQueue.add(currAdjNode);
-                        connections.add(new Pair<>(root, currAdjNode));
-                        return 0;
-                    }
+            IntStream.range(waveStart[w], waveStart[w + 1]).parallel().forEach(j -> {
+                CorridorRouter router = routers.poll();
+                if (router == null) {
+                    router = new CorridorRouter();
+                    router.setCosts(corridorRouter.getWallCost(), corridorRouter.getFloorCost());
                 }
-            }
+                carveConnection(router, byWave[j]);
+                routers.offer(router);
+            });
         }
+    }
 
-        return roomsConnected;
-    }
-
-//    private void connectHorizontalRooms(Node dungeonNode) {
-//        if (dungeonNode == null) {
-//            return;
-//        }
-//        if (dungeonNode.data.containsRoom()) {
-//            Node endingNode = findNextRoomHorizontal(dungeonNode);
-//            if (endingNode != null) {
-//                BFS(dungeonNode.data.getRoomCenter(),
-//                        endingNode.data.getRoomCenter());
-//            }
-//
-//        }
-//        connectHorizontalRooms(dungeonNode.next);
-//    }
-
-//    private Node findNextRoomHorizontal(Node currNode) {
-//        if (currNode.next == null) {
-//            return null;
-//        }
-//        if (currNode.next.data.containsRoom()) {
-//            return currNode.next;
-//        } else {
-//            return findNextRoomHorizontal(currNode.next);
-//        }
-//    }
-
-    private void BFS(Point2D start, Point2D end) {
-        Queue<Point2D> coordQueue = new LinkedList<>();
-        boolean[][] visited = new boolean[this.mapSizeX][this.mapSizeY];
-        Point2D[][] pred = new Point2D[this.mapSizeX][this.mapSizeY];
-
-        coordQueue.add(start);
-
-        boolean endReached = false;
-        while (!coordQueue.isEmpty()) {
-            Point2D currCoord = coordQueue.poll();
-            Point2D closestCoord = new Point2D(0,0);
-            double shortestDist = Double.POSITIVE_INFINITY;
-
-            for(int i = 0; i < 4; i++) {
-                int adjX = (int)currCoord.getX() + dRow[i];
-                int adjY = (int)currCoord.getY() + dCol[i];
-                Point2D adj = new Point2D(adjX, adjY);
-
-                double distanceToEnd = compareDistance(adj, end);
-                if (distanceToEnd == 0) {
-                    endReached = true;
-                    break;
+    /**
+     * Picks which pairs of adjacent sections to join with corridors.
+     * A random spanning tree over all sections is built with Kruskal's
+     * algorithm, taking edges between two rooms before any edge touching
+     * an empty section, so rooms are joined directly wherever possible.
+     * Empty sections left as leaves of the tree are then pruned until
+     * every remaining leaf is a room, which keeps every room connected.
+     */
+    private void planConnections() {
+        int sections = dungeonRooms.length;
+
+        // Edges are encoded as section * 2, plus 1 for the edge downwards
+        int[] roomEdges = new int[2 * sections];
+        int[] otherEdges = new int[2 * sections];
+        int numRoomEdges = 0;
+        int numOtherEdges = 0;
+        for (int i = 0; i < sections; i++) {
+            boolean room = dungeonRooms[i].containsRoom();
+            if (i % sectionsX + 1 < sectionsX) {
+                if (room && dungeonRooms[i + 1].containsRoom()) {
+                    roomEdges[numRoomEdges++] = 2 * i;
+                } else {
+                    otherEdges[numOtherEdges++] = 2 * i;
                 }
-                if (distanceToEnd < shortestDist) {
-                    shortestDist = distanceToEnd;
-                    closestCoord = adj;
+            }
+            if (i + sectionsX < sections) {
+                if (room && dungeonRooms[i + sectionsX].containsRoom()) {
+                    roomEdges[numRoomEdges++] = 2 * i + 1;
+                } else {
+                    otherEdges[numOtherEdges++] = 2 * i + 1;
                 }
+            }
+        }
+        shuffle(roomEdges, numRoomEdges);
+        shuffle(otherEdges, numOtherEdges);
+
+        // Kruskal: keep each edge that joins two separate trees
+        UnionFind trees = new UnionFind(sections);
+        int[] treeStarts = new int[Math.max(0, sections - 1)];
+        int[] treeEnds = new int[treeStarts.length];
+        int[] degree = new int[sections];
+        int treeSize = 0;
+        for (int i = 0; i < numRoomEdges + numOtherEdges && treeSize < treeStarts.length; i++) {
+            int edge = i < numRoomEdges ? roomEdges[i] : otherEdges[i - numRoomEdges];
+            int a = edge / 2;
+            int b = edge % 2 == 0 ? a + 1 : a + sectionsX;
+            if (trees.union(a, b)) {
+                treeStarts[treeSize] = a;
+                treeEnds[treeSize] = b;
+                treeSize++;
+                degree[a]++;
+                degree[b]++;
+            }
+        }
 
-                if (isValid(visited, adjX, adjY)) {
-                    visited[adjX][adjY] = true;
+        // Build int adjacency arrays for the tree
+        int[] adjStart = new int[sections + 1];
+        for (int i = 0; i < sections; i++) {
+            adjStart[i + 1] = adjStart[i] + degree[i];
+        }
+        int[] adj = new int[2 * treeSize];
+        int[] fill = Arrays.copyOf(adjStart, sections);
+        for (int i = 0; i < treeSize; i++) {
+            adj[fill[treeStarts[i]]++] = treeEnds[i];
+            adj[fill[treeEnds[i]]++] = treeStarts[i];
+        }
+
+        // Prune empty leaves until every leaf is a room
+        BitSet removed = new BitSet(sections);
+        int[] leaves = new int[sections];
+        int leafHead = 0;
+        int leafTail = 0;
+        for (int i = 0; i < sections; i++) {
+            if (!dungeonRooms[i].containsRoom() && degree[i] <= 1) {
+                leaves[leafTail++] = i;
+            }
+        }
+        while (leafHead < leafTail) {
+            int leaf = leaves[leafHead++];
+            removed.set(leaf);
+            for (int j = adjStart[leaf]; j < adjStart[leaf + 1]; j++) {
+                int next = adj[j];
+                if (removed.get(next)) {
+                    continue;
+                }
+                degree[next]--;
+                if (!dungeonRooms[next].containsRoom() && degree[next] == 1) {
+                    leaves[leafTail++] = next;
                 }
             }
-            if (endReached) {
-                pred[(int)end.getX()][(int)end.getY()]
-                        = currCoord;
-                break;
+        }
+
+        // Keep the tree edges that survived pruning
+        connectionStarts = new int[treeSize];
+        connectionEnds = new int[treeSize];
+        numConnections = 0;
+        for (int i = 0; i < treeSize; i++) {
+            if (!removed.get(treeStarts[i]) && !removed.get(treeEnds[i])) {
+                connectionStarts[numConnections] = treeStarts[i];
+                connectionEnds[numConnections] = treeEnds[i];
+                numConnections++;
             }
+        }
+    }
 
-            coordQueue.add(closestCoord);
-            pred[(int)closestCoord.getX()][(int)closestCoord.getY()]
-                    = currCoord;
-            visited[(int)currCoord.getX()][(int)currCoord.getY()]
-                    = true;
+    /**
+     * Carves a corridor between two tiles, leaving floor and centers intact.
+     * @param startX the x coordinate of the first tile
+     * @param startY the y coordinate of the first tile
+     * @param endX the x coordinate of the last tile
+     * @param endY the y coordinate of the last tile
+     * @return the number of wall tiles that were carved
+     * @throws IllegalArgumentException if the map is too large to route
+     *         across at the current corridor costs
+     */
+    public int carveCorridor(int startX, int startY, int endX, int endY) {
+        return carveCorridor(corridorRouter, startX, startY, endX, endY,
+                0, 0, mapSizeX - 1, mapSizeY - 1);
+    }
+
+    /**
+     * Carves a planned corridor between the centers of two adjacent
+     * sections, kept inside those two sections.
+     */
+    private void carveConnection(CorridorRouter router, int connection) {
+        DungeonRoom start = dungeonRooms[connectionStarts[connection]];
+        DungeonRoom end = dungeonRooms[connectionEnds[connection]];
+        int minX = Math.min(start.getIndexX(), end.getIndexX()) * roomSectionX;
+        int minY = Math.min(start.getIndexY(), end.getIndexY()) * roomSectionY;
+        int maxX = (Math.max(start.getIndexX(), end.getIndexX()) + 1) * roomSectionX - 1;
+        int maxY = (Math.max(start.getIndexY(), end.getIndexY()) + 1) * roomSectionY - 1;
+        carveCorridor(router, start.getCenterX(), start.getCenterY(),
+                end.getCenterX(), end.getCenterY(), minX, minY, maxX, maxY);
+    }
+
+    private int carveCorridor(CorridorRouter router, int startX, int startY, int endX, int endY,
+                              int minX, int minY, int maxX, int maxY) {
+        long start = System.nanoTime();
+        int carved = router.carve(tileMap, startX, startY, endX, endY, minX, minY, maxX, maxY);
+        metrics.corridorTilesCarved(carved);
+        metrics.getCorridorRoute().record(System.nanoTime() - start);
+        return carved;
+    }
+
+    /**
+     * Sets how much more it costs to route a corridor through wall than
+     * along existing floor. Making wall dearer merges corridors into rooms
+     * and earlier corridors, but routing takes longer; equal costs, the
+     * default, give the shortest corridors.
+     * Takes effect from the next call to connectRooms.
+     * @param wallCost the cost of carving through a wall tile, at least 1
+     * @param floorCost the cost of walking over a floor or center tile, at least 1
+     */
+    public void setCorridorCosts(int wallCost, int floorCost) {
+        corridorRouter.setCosts(wallCost, floorCost);
+    }
+
+    /**
+     * Sets whether rooms and corridors are generated on all cores.
+     * The dungeon is the same either way. On by default for maps of
+     * at least PARALLEL_MIN_TILES tiles.
+     * @param parallel true to generate in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return true if rooms and corridors are generated on all cores
+     */
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * @return the cost of routing a corridor through a wall tile
+     */
+    public int getWallCost() {
+        return corridorRouter.getWallCost();
+    }
+
+    /**
+     * @return the cost of routing a corridor over a floor or center tile
+     */
+    public int getFloorCost() {
+        return corridorRouter.getFloorCost();
+    }
+
+    /**
+     * @param x the x coordinate of a tile
+     * @param y the y coordinate of a tile
+     * @return the room nearest to the tile, by Manhattan distance
+     */
+    public DungeonRoom findNearestRoom(int x, int y) {
+        DungeonRoom nearest = dungeonRooms[startingRoomNum];
+        int nearestDistance = Integer.MAX_VALUE;
+        for (DungeonRoom room : dungeonRooms) {
+            if (!room.containsRoom()) {
+                continue;
+            }
+            int distance = Math.abs(room.getCenterX() - x) + Math.abs(room.getCenterY() - y);
+            if (distance < nearestDistance) {
+                nearest = room;
+                nearestDistance = distance;
+            }
         }
-        traceCorridor(pred, end);
+        return nearest;
+    }
+
+    /**
+     * @param room a room section of this dungeon
+     * @return the x coordinate of the left edge of the room's section
+     */
+    private int sectionOriginX(DungeonRoom room) {
+        return room.getIndexX() * roomSectionX;
     }
 
-    private boolean isValid(boolean[][] visited, int x, int y) {
-        if (x < 0 || y < 0 ||
-            x >= this.mapSizeX || y >= this.mapSizeY) {
-            return false;
+    /**
+     * @param room a room section of this dungeon
+     * @return the y coordinate of the top edge of the room's section
+     */
+    private int sectionOriginY(DungeonRoom room) {
+        return room.getIndexY() * roomSectionY;
+    }
+
+    /**
+     * Runs every generation phase, producing a complete dungeon
+     * from the current seed.
+     */
+    public void generate() {
+        initMap();
+        createRooms();
+        connectRooms();
+    }
+
+    /**
+     * Generates the dungeon, checking that every room can be reached.
+     * While a room cannot, the dungeon is generated again from a seed
+     * derived from the original one, up to maxRetries more times. Retry
+     * seeds are salted, so no retry reuses the stream of a room in an
+     * earlier attempt.
+     * Afterwards getSeed returns the seed that produced the dungeon.
+     * @param maxRetries the most times to generate again
+     * @return the reachability of the final dungeon, which is
+     *         still disconnected if the retries ran out
+     */
+    public Reachability generateConnected(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Negative retry budget: " + maxRetries);
+        }
+        long originalSeed = seed;
+        generate();
+        Reachability reachability = validate();
+        for (int retry = 0; retry < maxRetries && !reachability.isConnected(); retry++) {
+            metrics.disconnectedRetry();
+            seed = retrySeed(originalSeed, retry);
+            generate();
+            reachability = validate();
         }
+        return reachability;
+    }
+
+    /**
+     * @param originalSeed the seed the first attempt was generated from
+     * @param retry the number of the retry, from 0
+     * @return the seed the retry is generated from
+     */
+    static long retrySeed(long originalSeed, int retry) {
+        return Seeds.derive(originalSeed, RETRIES, retry);
+    }
 
-        if (visited[x][y]) {
-            return false;
+    /**
+     * @return which rooms can be reached from the starting room
+     */
+    public Reachability validate() {
+        long start = System.nanoTime();
+        if (validator == null) {
+            validator = new ReachabilityValidator();
         }
+        Reachability reachability = validator.validate(this);
+        metrics.getValidate().record(System.nanoTime() - start);
+        return reachability;
+    }
 
-        return true;
+    /**
+     * @return an immutable copy of the dungeon in its current state
+     */
+    public DungeonSnapshot snapshot() {
+        return new DungeonSnapshot(seed, sectionsX, sectionsY, tileMap, dungeonRooms, startingRoomNum);
     }
 
-    private double compareDistance(Point2D start, Point2D end) {
-        return Math.sqrt(
-                Math.pow((end.getX() - start.getX()), 2) +
-                Math.pow((end.getY() - start.getY()), 2));
+    /**
+     * Shuffles the array in place using the dungeon's random stream.
+     * @param values the array to shuffle
+     */
+    private void shuffle(int[] values) {
+        shuffle(values, values.length);
     }
 
-    private void traceCorridor(Point2D[][] pred, Point2D end) {
-        Point2D currPoint = pred[(int)end.getX()][(int)end.getY()];
-        if (currPoint == null) {
-            return;
-        }
-        DungeonTile currTile = tileMap[(int) currPoint.getX()][(int) currPoint.getY()];
-        if (currTile.getType() != DungeonTile.TileType.FLOOR) {
-            currTile.setType(DungeonTile.TileType.FLOOR);
+    /**
+     * Shuffles the start of the array in place using the dungeon's random stream.
+     * @param values the array to shuffle
+     * @param length the number of values to shuffle
+     */
+    private void shuffle(int[] values, int length) {
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = values[i];
+            values[i] = values[j];
+            values[j] = temp;
         }
-        traceCorridor(pred, currPoint);
+    }
+
+    /**
+     * @return the seed the dungeon is generated from
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Sets the seed used by the next call to initMap.
+     * @param seed the seed the dungeon will be generated from
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return the metrics generation is recorded to
+     */
+    public GenerationMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Sets where generation timings and counts are recorded.
+     * @param metrics the metrics to record to
+     */
+    public void setMetrics(GenerationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the number of room sections across
+     */
+    public int getSectionsX() {
+        return this.sectionsX;
+    }
+
+    /**
+     * @return the number of room sections down
+     */
+    public int getSectionsY() {
+        return this.sectionsY;
     }
 
     public DungeonRoom[] getDungeonRooms() {
         return this.dungeonRooms;
     }
 
-    // node of linked list
-    static class Node {
-        DungeonRoom data;
-        Node right;
-        Node down;
-        Node up;
-        Node left;
-    };
-
-    // returns head pointer of linked list
-    // constructed from 2D matrix
-    static Node construct(DungeonRoom[][] arr, int i, int j, int m,
-                          int n, Node[][] visited)
-    {
-        // return if i or j is out of bounds
-        if (i > m - 1 || j > n - 1 || i < 0 || j < 0)
-            return null;
-        // Check if node is previously created then,
-        // don't need to create new/
-        if (visited[i][j] != null) {
-            return visited[i][j];
-        }
-        // create a new node for current i and j
-        // and recursively allocate its down and
-        // right pointers
-        Node temp = new Node();
-        visited[i][j] = temp;
-        temp.data = arr[i][j];
-        temp.right = construct(arr, i + 1, j, m, n, visited);
-        temp.left = construct(arr, i - 1, j, m, n, visited);
-        temp.down = construct(arr, i, j + 1, m, n, visited);
-        temp.up = construct(arr, i, j - 1, m, n, visited);
-
-        return temp;
+    /**
+     * @return the index in dungeonRooms of the room the player starts in
+     */
+    public int getStartingRoomIndex() {
+        return this.startingRoomNum;
     }
 }
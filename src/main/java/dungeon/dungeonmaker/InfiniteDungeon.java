@@ -0,0 +1,171 @@
+package dungeon.dungeonmaker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * An unbounded dungeon made of chunks, each chunk being a GridDungeon of
+ * square room sections. Chunks are generated from the world seed and their
+ * coordinates the first time they are needed, and only a bounded number is
+ * kept in memory; evicted chunks are regenerated identically on demand.
+ * <p>
+ * Every border between two chunks has a doorway whose position depends only
+ * on the world seed and the border, so both chunks carve a corridor to the
+ * same tile row or column and their corridors meet at the border.
+ * <p>
+ * Safe to share between threads. A chunk is generated outside the lock,
+ * by the first thread to ask for it, so a miss only holds up other
+ * threads asking for that same chunk.
+ */
+public class InfiniteDungeon {
+
+    // static final variables
+    public static final int DEFAULT_CHUNK_SECTIONS = 8;
+    public static final int DEFAULT_SECTION_SIZE = 16;
+    public static final int DEFAULT_MAX_CHUNKS = 64;
+
+    // Salts keeping border doorways independent of chunk seeds
+    private static final long VERTICAL_BORDER = 1;
+    private static final long HORIZONTAL_BORDER = 2;
+
+    // Instance variables
+    private final long worldSeed;
+    private final int chunkSections;
+    private final int sectionSize;
+    private final int chunkSize;
+    private final LinkedHashMap<Long, FutureTask<DungeonSnapshot>> chunks;
+
+    /**
+     * Constructor to instantiate an InfiniteDungeon with default chunk settings.
+     * @param worldSeed the seed every chunk is derived from
+     */
+    public InfiniteDungeon(long worldSeed) {
+        this(worldSeed, DEFAULT_CHUNK_SECTIONS, DEFAULT_SECTION_SIZE, DEFAULT_MAX_CHUNKS);
+    }
+
+    /**
+     * Constructor to instantiate a new InfiniteDungeon
+     * @param worldSeed the seed every chunk is derived from
+     * @param chunkSections the number of room sections along each side of a chunk
+     * @param sectionSize the width and height of a room section in tiles
+     * @param maxChunks the most chunks to keep in memory at once
+     */
+    public InfiniteDungeon(long worldSeed, int chunkSections, int sectionSize, int maxChunks) {
+        if (maxChunks <= 0) {
+            throw new IllegalArgumentException("Must keep at least one chunk: " + maxChunks);
+        }
+        this.worldSeed = worldSeed;
+        this.chunkSections = chunkSections;
+        this.sectionSize = sectionSize;
+        this.chunkSize = Math.multiplyExact(chunkSections, sectionSize);
+        // Access ordered, so the eldest entry is the least recently used chunk
+        this.chunks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, FutureTask<DungeonSnapshot>> eldest) {
+                return size() > maxChunks;
+            }
+        };
+    }
+
+    /**
+     * @param x the world x coordinate of a tile
+     * @param y the world y coordinate of a tile
+     * @return the TileType of the tile, generating its chunk if needed
+     */
+    public TileType getType(long x, long y) {
+        DungeonSnapshot chunk = getChunk(
+                Math.toIntExact(Math.floorDiv(x, chunkSize)),
+                Math.toIntExact(Math.floorDiv(y, chunkSize)));
+        return chunk.getType(Math.floorMod(x, chunkSize), Math.floorMod(y, chunkSize));
+    }
+
+    /**
+     * @param chunkX the x coordinate of the chunk, in chunks
+     * @param chunkY the y coordinate of the chunk, in chunks
+     * @return the chunk, generating it if it is not in memory
+     */
+    public DungeonSnapshot getChunk(int chunkX, int chunkY) {
+        long key = ((long) chunkX << 32) | (chunkY & 0xffffffffL);
+        FutureTask<DungeonSnapshot> chunk;
+        synchronized (this) {
+            chunk = chunks.computeIfAbsent(key, k -> new FutureTask<>(() -> generateChunk(chunkX, chunkY)));
+        }
+        // Does nothing if another thread is already generating it
+        chunk.run();
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for chunk " + chunkX + ", " + chunkY);
+        } catch (ExecutionException e) {
+            // Forget the failure so the next lookup tries again
+            synchronized (this) {
+                chunks.remove(key, chunk);
+            }
+            throw new IllegalStateException(
+                    "Chunk " + chunkX + ", " + chunkY + " failed to generate", e.getCause());
+        }
+    }
+
+    /**
+     * Generates a chunk, then carves a corridor from each of its four
+     * border doorways to the nearest room in the chunk.
+     */
+    private DungeonSnapshot generateChunk(int chunkX, int chunkY) {
+        GridDungeon generator = new GridDungeon(chunkSize, chunkSize, chunkSections, chunkSections,
+                Seeds.derive(worldSeed, chunkX, chunkY));
+        generator.generate();
+
+        int last = chunkSize - 1;
+        // West and east borders
+        connectDoorway(generator, 0, doorway(VERTICAL_BORDER, chunkX, chunkY));
+        connectDoorway(generator, last, doorway(VERTICAL_BORDER, chunkX + 1, chunkY));
+        // North and south borders
+        connectDoorway(generator, doorway(HORIZONTAL_BORDER, chunkX, chunkY), 0);
+        connectDoorway(generator, doorway(HORIZONTAL_BORDER, chunkX, chunkY + 1), last);
+        return generator.snapshot();
+    }
+
+    private static void connectDoorway(GridDungeon generator, int x, int y) {
+        DungeonRoom room = generator.findNearestRoom(x, y);
+        generator.carveCorridor(room.getCenterX(), room.getCenterY(), x, y);
+    }
+
+    /**
+     * Picks where along a border its doorway is. The doorway is always in
+     * line with the middle of a section, away from the chunk corners.
+     * @param border which kind of border, vertical or horizontal
+     * @param chunkX the x coordinate of the chunk to the east or south of the border
+     * @param chunkY the y coordinate of the chunk to the east or south of the border
+     * @return the offset of the doorway along the border, in tiles
+     */
+    private int doorway(long border, int chunkX, int chunkY) {
+        long borderSeed = Seeds.derive(Seeds.derive(worldSeed, border), chunkX, chunkY);
+        int section = Math.floorMod(borderSeed, chunkSections);
+        return section * sectionSize + sectionSize / 2;
+    }
+
+    /**
+     * @return the width and height of a chunk in tiles
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the seed every chunk is derived from
+     */
+    public long getWorldSeed() {
+        return worldSeed;
+    }
+
+    /**
+     * @return the number of chunks currently held in memory
+     */
+    public synchronized int getCachedChunkCount() {
+        return chunks.size();
+    }
+}
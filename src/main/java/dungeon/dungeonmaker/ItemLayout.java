@@ -0,0 +1,160 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Items placed in a dungeon, with a uniform grid index over their tiles.
+ * <p>
+ * The map is split into square cells, and the items are sorted by cell
+ * into one array with a start offset per cell, so a radius or rectangle
+ * query only looks at the items in the cells it overlaps.
+ */
+public final class ItemLayout {
+
+    // Instance variables
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] rooms;
+    private final int cellSize;
+    private final int cellsX;
+    private final int cellsY;
+    // Items of cell c are cellItems[cellStart[c]] to cellItems[cellStart[c + 1] - 1]
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    /**
+     * Constructor to instantiate a new ItemLayout, indexing the items.
+     * @param width the width of the dungeon
+     * @param height the height of the dungeon
+     * @param xs the x coordinate of each item
+     * @param ys the y coordinate of each item
+     * @param rooms the index of the room each item is in
+     * @param cellSize the width and height of an index cell in tiles
+     */
+    ItemLayout(int width, int height, int[] xs, int[] ys, int[] rooms, int cellSize) {
+        this.xs = xs;
+        this.ys = ys;
+        this.rooms = rooms;
+        this.cellSize = cellSize;
+        this.cellsX = (width + cellSize - 1) / cellSize;
+        this.cellsY = (height + cellSize - 1) / cellSize;
+
+        // Counting sort of the items by cell
+        int[] itemCells = new int[xs.length];
+        cellStart = new int[cellsX * cellsY + 1];
+        for (int i = 0; i < xs.length; i++) {
+            itemCells[i] = (ys[i] / cellSize) * cellsX + xs[i] / cellSize;
+            cellStart[itemCells[i] + 1]++;
+        }
+        for (int c = 0; c < cellsX * cellsY; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[xs.length];
+        int[] fill = Arrays.copyOf(cellStart, cellsX * cellsY);
+        for (int i = 0; i < xs.length; i++) {
+            cellItems[fill[itemCells[i]]++] = i;
+        }
+    }
+
+    /**
+     * @return the number of items
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * @param i the index of an item
+     * @return the x coordinate of the item's tile
+     */
+    public int getX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * @param i the index of an item
+     * @return the y coordinate of the item's tile
+     */
+    public int getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @param i the index of an item
+     * @return the index of the room the item is in
+     */
+    public int getRoom(int i) {
+        return rooms[i];
+    }
+
+    /**
+     * Calls the action with the index of every item within radius of a point.
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param radius the greatest distance from the point, in tiles
+     * @param action receives the index of each item found
+     */
+    public void forEachWithin(double x, double y, double radius, IntConsumer action) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Negative radius: " + radius);
+        }
+        double radiusSquared = radius * radius;
+        int minCellX = Math.max(0, (int) Math.floor((x - radius) / cellSize));
+        int minCellY = Math.max(0, (int) Math.floor((y - radius) / cellSize));
+        int maxCellX = Math.min(cellsX - 1, (int) Math.floor((x + radius) / cellSize));
+        int maxCellY = Math.min(cellsY - 1, (int) Math.floor((y + radius) / cellSize));
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                int cell = cy * cellsX + cx;
+                for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+                    int item = cellItems[j];
+                    double dx = xs[item] - x;
+                    double dy = ys[item] - y;
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        action.accept(item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @param radius the greatest distance from the point, in tiles
+     * @return the indices of the items within radius of the point
+     */
+    public int[] within(double x, double y, double radius) {
+        IntStream.Builder found = IntStream.builder();
+        forEachWithin(x, y, radius, found);
+        return found.build().toArray();
+    }
+
+    /**
+     * Calls the action with the index of every item inside a rectangle of tiles.
+     * @param minX the smallest x coordinate, inclusive
+     * @param minY the smallest y coordinate, inclusive
+     * @param maxX the largest x coordinate, inclusive
+     * @param maxY the largest y coordinate, inclusive
+     * @param action receives the index of each item found
+     */
+    public void forEachInRect(int minX, int minY, int maxX, int maxY, IntConsumer action) {
+        int minCellX = Math.max(0, Math.floorDiv(minX, cellSize));
+        int minCellY = Math.max(0, Math.floorDiv(minY, cellSize));
+        int maxCellX = Math.min(cellsX - 1, Math.floorDiv(maxX, cellSize));
+        int maxCellY = Math.min(cellsY - 1, Math.floorDiv(maxY, cellSize));
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                int cell = cy * cellsX + cx;
+                for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+                    int item = cellItems[j];
+                    if (xs[item] >= minX && xs[item] <= maxX && ys[item] >= minY && ys[item] <= maxY) {
+                        action.accept(item);
+                    }
+                }
+            }
+        }
+    }
+}
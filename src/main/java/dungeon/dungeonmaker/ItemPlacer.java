@@ -0,0 +1,192 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Scatters items over the floor of the rooms of a dungeon, keeping them
+ * a minimum distance apart and away from the starting room.
+ * <p>
+ * Items are placed by Poisson-disk dart throwing: random floor tiles of a
+ * room are tried until the room holds as many items as its density asks
+ * for, or until so many tries in a row fail that the room is taken to be
+ * full. A tile is rejected if an item already lies too close. Whether an
+ * item lies too close is answered by a background grid whose cells are
+ * small enough to hold at most one item each, so every try only looks at
+ * the few cells around it, however many items were placed before.
+ * <p>
+ * The items only depend on the dungeon's seed and the placer's settings.
+ */
+public class ItemPlacer {
+
+    // static final variables
+    public static final double DEFAULT_MIN_DISTANCE = 3;
+    public static final double DEFAULT_DENSITY = 0.05;
+    public static final double DEFAULT_MIN_START_DISTANCE = 8;
+    // Failed tries in a row after which a room is taken to be full
+    private static final int MAX_MISSES = 12;
+    // Salt keeping item placement independent of the room streams
+    private static final long ITEMS = -1;
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Instance variables
+    private double minDistance = DEFAULT_MIN_DISTANCE;
+    private double minStartDistance = DEFAULT_MIN_START_DISTANCE;
+    private ToDoubleFunction<DungeonRoom> density = room -> DEFAULT_DENSITY;
+
+    /**
+     * Sets how far apart any two items must be.
+     * @param minDistance the smallest distance between two items, in tiles
+     */
+    public void setMinDistance(double minDistance) {
+        if (!(minDistance >= 1)) {
+            throw new IllegalArgumentException("Minimum distance must be at least 1: " + minDistance);
+        }
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * Sets how far items must be from the center of the starting room.
+     * @param minStartDistance the smallest distance from the start, in tiles, 0 for none
+     */
+    public void setMinStartDistance(double minStartDistance) {
+        if (!(minStartDistance >= 0)) {
+            throw new IllegalArgumentException("Start distance must not be negative: " + minStartDistance);
+        }
+        this.minStartDistance = minStartDistance;
+    }
+
+    /**
+     * Sets how densely each room is filled. The rule is given the room and
+     * returns the expected number of items per tile of it; a room asking for
+     * more than the minimum distance allows ends up with fewer.
+     * @param density the items per tile of a room
+     */
+    public void setDensity(ToDoubleFunction<DungeonRoom> density) {
+        if (density == null) {
+            throw new IllegalArgumentException("Density rule must not be null");
+        }
+        this.density = density;
+    }
+
+    /**
+     * @return the smallest distance between two items, in tiles
+     */
+    public double getMinDistance() {
+        return this.minDistance;
+    }
+
+    /**
+     * @return the smallest distance between an item and the start, in tiles
+     */
+    public double getMinStartDistance() {
+        return this.minStartDistance;
+    }
+
+    /**
+     * Places items in every room of the dungeon.
+     * @param dungeon the dungeon to place items in
+     * @return the items placed, indexed for spatial queries
+     */
+    public ItemLayout place(DungeonSnapshot dungeon) {
+        int width = dungeon.getWidth();
+        int height = dungeon.getHeight();
+        SplittableRandom random = new SplittableRandom(Seeds.derive(dungeon.getSeed(), ITEMS));
+
+        // A cell's diagonal is the minimum distance, so it can hold one item at most
+        double cellSize = minDistance / Math.sqrt(2);
+        int cellsX = (int) Math.ceil(width / cellSize);
+        int cellsY = (int) Math.ceil(height / cellSize);
+        int reach = (int) Math.ceil(minDistance / cellSize);
+        int[] cells = new int[cellsX * cellsY];
+        Arrays.fill(cells, EMPTY);
+        double minDistanceSquared = minDistance * minDistance;
+        double startDistanceSquared = minStartDistance * minStartDistance;
+
+        int startX = 0;
+        int startY = 0;
+        if (dungeon.getRoomCount() > 0) {
+            DungeonRoom start = dungeon.getRoom(dungeon.getStartingRoomIndex());
+            startX = start.getCenterX();
+            startY = start.getCenterY();
+        }
+
+        // Parallel growable arrays of the items placed so far
+        int[] xs = new int[INITIAL_CAPACITY];
+        int[] ys = new int[INITIAL_CAPACITY];
+        int[] rooms = new int[INITIAL_CAPACITY];
+        int count = 0;
+        for (int r = 0; r < dungeon.getRoomCount(); r++) {
+            DungeonRoom room = dungeon.getRoom(r);
+            if (!room.containsRoom()) {
+                continue;
+            }
+            int area = room.getWidth() * room.getHeight();
+            double expected = area * density.applyAsDouble(room);
+            // Round up by chance, so rooms too small for one item on average still get some
+            int target = (int) expected + (random.nextDouble() < expected - (int) expected ? 1 : 0);
+
+            int placed = 0;
+            int misses = 0;
+            while (placed < target && misses < MAX_MISSES) {
+                misses++;
+                int x = room.getOriginX() + random.nextInt(room.getWidth());
+                int y = room.getOriginY() + random.nextInt(room.getHeight());
+                if (dungeon.getType(x, y) != TileType.FLOOR) {
+                    continue;
+                }
+                double sx = x - startX;
+                double sy = y - startY;
+                if (sx * sx + sy * sy < startDistanceSquared) {
+                    continue;
+                }
+
+                int cellX = (int) (x / cellSize);
+                int cellY = (int) (y / cellSize);
+                if (isCrowded(cells, cellsX, cellsY, cellX, cellY, reach,
+                        x, y, xs, ys, minDistanceSquared)) {
+                    continue;
+                }
+                if (count == xs.length) {
+                    xs = Arrays.copyOf(xs, count * 2);
+                    ys = Arrays.copyOf(ys, count * 2);
+                    rooms = Arrays.copyOf(rooms, count * 2);
+                }
+                cells[cellY * cellsX + cellX] = count;
+                xs[count] = x;
+                ys[count] = y;
+                rooms[count] = r;
+                count++;
+                placed++;
+                misses = 0;
+            }
+        }
+
+        return new ItemLayout(width, height, Arrays.copyOf(xs, count), Arrays.copyOf(ys, count),
+                Arrays.copyOf(rooms, count), (int) Math.ceil(minDistance));
+    }
+
+    /**
+     * @return true if an item already placed lies closer than the minimum distance
+     */
+    private static boolean isCrowded(int[] cells, int cellsX, int cellsY, int cellX, int cellY,
+                                     int reach, int x, int y, int[] xs, int[] ys,
+                                     double minDistanceSquared) {
+        for (int cy = Math.max(0, cellY - reach); cy <= Math.min(cellsY - 1, cellY + reach); cy++) {
+            for (int cx = Math.max(0, cellX - reach); cx <= Math.min(cellsX - 1, cellX + reach); cx++) {
+                int item = cells[cy * cellsX + cx];
+                if (item == EMPTY) {
+                    continue;
+                }
+                double dx = xs[item] - x;
+                double dy = ys[item] - y;
+                if (dx * dx + dy * dy < minDistanceSquared) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,110 @@
+package dungeon.dungeonmaker;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in power-of-two nanosecond buckets.
+ * Recording is a couple of LongAdder increments, so it is cheap enough
+ * to leave on in production, at the cost of percentiles that are only
+ * accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    // Instance variables
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one duration.
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // Bucket i holds durations in [2^(i-1), 2^i)
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean duration in microseconds
+     */
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    /**
+     * @return the median duration in microseconds
+     */
+    public double getP50Micros() {
+        return percentileMicros(0.50);
+    }
+
+    /**
+     * @return the 99th percentile duration in microseconds
+     */
+    public double getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    /**
+     * @return the longest duration in microseconds
+     */
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    /**
+     * @param fraction the percentile, between 0 and 1
+     * @return the upper bound of the bucket holding the percentile, in microseconds
+     */
+    public double percentileMicros(double fraction) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return Math.min(i == 0 ? 0 : Math.scalb(1.0, i) - 1, maxNanos.get()) / 1000.0;
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Forgets every recorded duration.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
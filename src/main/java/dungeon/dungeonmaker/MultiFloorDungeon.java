@@ -0,0 +1,236 @@
+package dungeon.dungeonmaker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A dungeon of floors stacked one below the other, each a GridDungeon
+ * generated from a seed derived from the parent seed and its depth, so
+ * the same parent seed always gives the same floors.
+ * <p>
+ * Moving to a floor starts generating the next few floors below it on a
+ * background thread, so by the time the player takes the stairs down the
+ * floor is usually ready and the switch is instant. Asking for a floor
+ * that is still queued generates it straight away on the calling thread
+ * instead of waiting its turn. Only the floor above the current one and
+ * those being prefetched are kept; a floor asked for outside them is
+ * generated but not kept, and any floor is generated again, identically,
+ * when it is next needed.
+ */
+public class MultiFloorDungeon implements AutoCloseable {
+
+    // static final variables
+    public static final int DEFAULT_PREFETCH = 2;
+
+    // Instance variables
+    private final long seed;
+    private final DungeonParameters parameters;
+    private final int prefetch;
+    private final int maxRetries;
+    private final Map<Integer, FutureTask<DungeonFloor>> floors = new HashMap<>();
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "floor-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int currentFloor;
+
+    /**
+     * Constructor to instantiate a MultiFloorDungeon
+     * prefetching the default number of floors.
+     * @param seed the seed every floor is derived from
+     * @param parameters the settings every floor is generated with
+     */
+    public MultiFloorDungeon(long seed, DungeonParameters parameters) {
+        this(seed, parameters, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Constructor to instantiate a new MultiFloorDungeon, starting on the
+     * top floor and prefetching the floors below it.
+     * @param seed the seed every floor is derived from
+     * @param parameters the settings every floor is generated with
+     * @param prefetch how many floors below the current one to generate ahead
+     */
+    public MultiFloorDungeon(long seed, DungeonParameters parameters, int prefetch) {
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("Negative prefetch depth: " + prefetch);
+        }
+        this.seed = seed;
+        this.parameters = parameters;
+        this.prefetch = prefetch;
+        this.maxRetries = BatchGenerator.DEFAULT_MAX_RETRIES;
+        schedule(0);
+    }
+
+    /**
+     * @param floor the depth of a floor, 0 for the top floor
+     * @return the floor, waiting for or generating it if it is not ready
+     */
+    public DungeonFloor getFloor(int floor) {
+        if (floor < 0) {
+            throw new IllegalArgumentException("No floor above the top: " + floor);
+        }
+        while (true) {
+            FutureTask<DungeonFloor> task;
+            synchronized (this) {
+                task = isKept(floor) ? floors.computeIfAbsent(floor, this::newTask) : newTask(floor);
+            }
+            // Does nothing if the prefetch thread has already started it
+            task.run();
+            try {
+                return task.get();
+            } catch (CancellationException e) {
+                // A move to another floor dropped the task before it ran; look again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted waiting for floor " + floor);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Floor " + floor + " failed to generate", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @return the floor the player is on
+     */
+    public DungeonFloor getCurrentFloor() {
+        return getFloor(getCurrentFloorIndex());
+    }
+
+    /**
+     * @return the depth of the floor the player is on
+     */
+    public synchronized int getCurrentFloorIndex() {
+        return currentFloor;
+    }
+
+    /**
+     * Moves to the floor below, through the stairs down.
+     * @return the new current floor
+     */
+    public DungeonFloor descend() {
+        return goTo(getCurrentFloorIndex() + 1);
+    }
+
+    /**
+     * Moves to the floor above, through the stairs up.
+     * @return the new current floor
+     */
+    public DungeonFloor ascend() {
+        return goTo(getCurrentFloorIndex() - 1);
+    }
+
+    /**
+     * Makes a floor the current one, starting to generate the floors below
+     * it and dropping floors too far from it.
+     * @param floor the depth of the floor, 0 for the top floor
+     * @return the new current floor
+     */
+    public DungeonFloor goTo(int floor) {
+        if (floor < 0) {
+            throw new IllegalArgumentException("No floor above the top: " + floor);
+        }
+        schedule(floor);
+        return getFloor(floor);
+    }
+
+    /**
+     * @param floor the depth of a floor, 0 for the top floor
+     * @return true if the floor is generated, so getting it will not wait
+     */
+    public synchronized boolean isReady(int floor) {
+        FutureTask<DungeonFloor> task = floors.get(floor);
+        return task != null && task.isDone() && !task.isCancelled();
+    }
+
+    /**
+     * @return the number of floors kept, generated or not
+     */
+    public synchronized int getCachedFloorCount() {
+        return floors.size();
+    }
+
+    /**
+     * @param floor the depth of a floor, 0 for the top floor
+     * @return the seed the floor is first generated from
+     */
+    public long getFloorSeed(int floor) {
+        return Seeds.derive(seed, floor);
+    }
+
+    /**
+     * @return the seed every floor is derived from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the settings every floor is generated with
+     */
+    public DungeonParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the current floor, queues the floors below it for prefetching,
+     * and forgets every floor except the one above and those queued.
+     * Floors that were queued but are no longer wanted are cancelled.
+     */
+    private synchronized void schedule(int floor) {
+        currentFloor = floor;
+        floors.entrySet().removeIf(entry -> {
+            if (isKept(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().cancel(false);
+            return true;
+        });
+        for (int next = floor; next <= floor + prefetch; next++) {
+            if (!floors.containsKey(next)) {
+                FutureTask<DungeonFloor> task = newTask(next);
+                floors.put(next, task);
+                // Once closed, floors are only generated when asked for
+                if (!prefetcher.isShutdown()) {
+                    prefetcher.execute(task);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the floor is near enough the current one to be kept
+     */
+    private boolean isKept(int floor) {
+        return floor >= currentFloor - 1 && floor <= currentFloor + prefetch;
+    }
+
+    private FutureTask<DungeonFloor> newTask(int floor) {
+        return new FutureTask<>(() -> generateFloor(floor));
+    }
+
+    /**
+     * Generates a floor, regenerating it from derived seeds while any of
+     * its rooms cannot be reached, then places its stairs.
+     */
+    private DungeonFloor generateFloor(int floor) {
+        GridDungeon dungeon = parameters.newDungeon(getFloorSeed(floor));
+        dungeon.generateConnected(maxRetries);
+        return new DungeonFloor(floor, dungeon.snapshot());
+    }
+
+    /**
+     * Stops prefetching. Floors already generated can still be got,
+     * any others are generated on the calling thread.
+     */
+    @Override
+    public void close() {
+        prefetcher.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package dungeon.dungeonmaker;
+
+/**
+ * The result of checking which rooms of a dungeon can be reached
+ * from its starting room.
+ */
+public final class Reachability {
+
+    // Instance variables
+    private final long reachableTiles;
+    private final long openTiles;
+    private final long totalTiles;
+    private final int[] unreachableRooms;
+
+    /**
+     * Constructor to instantiate a new Reachability
+     * @param reachableTiles the number of open tiles reachable from the starting room
+     * @param openTiles the number of open tiles in the whole map
+     * @param totalTiles the number of tiles in the whole map
+     * @param unreachableRooms the indices of the rooms that cannot be reached
+     */
+    Reachability(long reachableTiles, long openTiles, long totalTiles, int[] unreachableRooms) {
+        this.reachableTiles = reachableTiles;
+        this.openTiles = openTiles;
+        this.totalTiles = totalTiles;
+        this.unreachableRooms = unreachableRooms;
+    }
+
+    /**
+     * @return true if every room can be reached from the starting room
+     */
+    public boolean isConnected() {
+        return unreachableRooms.length == 0;
+    }
+
+    /**
+     * @return the number of floor and center tiles reachable from the starting room
+     */
+    public long getReachableTiles() {
+        return this.reachableTiles;
+    }
+
+    /**
+     * @return the number of floor and center tiles in the whole map
+     */
+    public long getOpenTiles() {
+        return this.openTiles;
+    }
+
+    /**
+     * @return the number of open tiles that cannot be reached from the starting room
+     */
+    public long getStrandedTiles() {
+        return openTiles - reachableTiles;
+    }
+
+    /**
+     * @return the share of the map's tiles that are floor or center, between 0 and 1
+     */
+    public double getOpenRatio() {
+        return (double) openTiles / totalTiles;
+    }
+
+    /**
+     * @return the indices in dungeonRooms of the rooms that cannot be reached
+     */
+    public int[] getUnreachableRooms() {
+        return unreachableRooms.clone();
+    }
+
+    @Override
+    public String toString() {
+        return isConnected()
+                ? "all rooms reachable, " + reachableTiles + " open tiles"
+                : unreachableRooms.length + " rooms unreachable, " + reachableTiles + " open tiles reachable";
+    }
+}
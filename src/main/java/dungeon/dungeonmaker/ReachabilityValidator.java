@@ -0,0 +1,208 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+
+/**
+ * Checks that every room of a dungeon can be reached from its starting room.
+ * <p>
+ * A scanline flood fill runs from the starting room's center over the
+ * open layer of the map's {@link TileLayers}; for a TileMap only that
+ * layer is built, eight tiles per step. Each step of the fill finds a
+ * whole horizontal span with a bit scan, then picks the start of every
+ * open, unvisited run in the rows above and below it out of a few words.
+ * Visited tiles are kept in a bitset laid out like the layers, and the
+ * bitsets and span stack are reused between calls, so validating costs
+ * a fraction of generating. Not thread-safe; give each thread its own
+ * validator.
+ */
+public class ReachabilityValidator {
+
+    private static final int INITIAL_STACK_CAPACITY = 256;
+
+    // Scratch buffers, laid out like TileLayers; the stack holds seed tiles and their rows
+    private long[] open = new long[0];
+    private long[] visited = new long[0];
+    private int wordsPerRow;
+    private int[] stackX = new int[INITIAL_STACK_CAPACITY];
+    private int[] stackRows = new int[INITIAL_STACK_CAPACITY];
+    private int stackSize;
+
+    /**
+     * @param dungeon the dungeon to check
+     * @return which rooms can be reached from the starting room
+     */
+    public Reachability validate(GridDungeon dungeon) {
+        return validate(dungeon.getTileMap(), dungeon.getDungeonRooms(), dungeon.getStartingRoomIndex());
+    }
+
+    /**
+     * @param map the tiles to flood
+     * @param rooms the rooms of the dungeon
+     * @param startingRoom the index of the room the fill starts from
+     * @return which rooms can be reached from the starting room
+     */
+    public Reachability validate(TileMap map, DungeonRoom[] rooms, int startingRoom) {
+        // Only the open layer is needed, so only that one is built
+        long openTiles = TileLayers.copyOpenWords(map, prepare(map.getWidth(), map.getHeight()));
+        return flood(map.getWidth(), map.getHeight(), openTiles, rooms, startingRoom);
+    }
+
+    /**
+     * @param map the tiles to flood, as bit layers
+     * @param rooms the rooms of the dungeon
+     * @param startingRoom the index of the room the fill starts from
+     * @return which rooms can be reached from the starting room
+     */
+    public Reachability validate(TileLayers map, DungeonRoom[] rooms, int startingRoom) {
+        long[] open = prepare(map.getWidth(), map.getHeight());
+        long openTiles = 0;
+        for (int i = 0; i < wordsPerRow * map.getHeight(); i++) {
+            open[i] = map.openWord(i);
+            openTiles += Long.bitCount(open[i]);
+        }
+        return flood(map.getWidth(), map.getHeight(), openTiles, rooms, startingRoom);
+    }
+
+    /**
+     * Sizes the bitsets for a map and clears the visited tiles.
+     * @return the bitset for the open tiles, to be filled in by the caller
+     */
+    private long[] prepare(int width, int height) {
+        wordsPerRow = (width + 63) >>> 6;
+        int words = wordsPerRow * height;
+        if (open.length < words) {
+            open = new long[words];
+            visited = new long[words];
+        } else {
+            Arrays.fill(visited, 0, words, 0);
+        }
+        return open;
+    }
+
+    private Reachability flood(int width, int height, long openTiles, DungeonRoom[] rooms, int startingRoom) {
+        DungeonRoom start = rooms[startingRoom];
+        long reachable = fill(width, height, start.getCenterX(), start.getCenterY());
+
+        int[] unreachable = new int[rooms.length];
+        int numUnreachable = 0;
+        for (int i = 0; i < rooms.length; i++) {
+            DungeonRoom room = rooms[i];
+            if (room.containsRoom() && !isSet(visited, room.getCenterX(), room.getCenterY())) {
+                unreachable[numUnreachable++] = i;
+            }
+        }
+        return new Reachability(reachable, openTiles, (long) width * height,
+                Arrays.copyOf(unreachable, numUnreachable));
+    }
+
+    /**
+     * Floods every open tile connected to (x, y).
+     * @return the number of tiles flooded
+     */
+    private long fill(int width, int height, int x, int y) {
+        if (!isSet(open, x, y)) {
+            return 0;
+        }
+
+        long filled = 0;
+        stackSize = 0;
+        push(x, y);
+        while (stackSize > 0) {
+            stackSize--;
+            int seed = stackX[stackSize];
+            int row = stackRows[stackSize];
+            if (isSet(visited, seed, row)) {
+                continue;
+            }
+            int rowStart = row * wordsPerRow;
+
+            // Widen the seed into the whole open span around it: the span
+            // ends next to the nearest closed bit on either side
+            int word = seed >>> 6;
+            long closed = ~open[rowStart + word] & (-1L >>> (63 - (seed & 63)));
+            while (closed == 0 && word > 0) {
+                word--;
+                closed = ~open[rowStart + word];
+            }
+            int left = closed == 0 ? 0 : (word << 6) + 64 - Long.numberOfLeadingZeros(closed);
+            word = seed >>> 6;
+            closed = ~open[rowStart + word] & (-1L << seed);
+            while (closed == 0 && word < wordsPerRow - 1) {
+                word++;
+                closed = ~open[rowStart + word];
+            }
+            int right = closed == 0 ? width - 1 : (word << 6) + Long.numberOfTrailingZeros(closed) - 1;
+
+            markVisited(rowStart, left, right);
+            filled += right - left + 1;
+
+            if (row > 0) {
+                pushSpans(row - 1, left, right);
+            }
+            if (row < height - 1) {
+                pushSpans(row + 1, left, right);
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * Pushes one seed for each open, unvisited run of tiles in [left, right] of the row.
+     */
+    private void pushSpans(int row, int left, int right) {
+        int rowStart = row * wordsPerRow;
+        int firstWord = left >>> 6;
+        int lastWord = right >>> 6;
+        // Whether the last tile of the previous word was a candidate
+        long carry = 0;
+        for (int word = firstWord; word <= lastWord; word++) {
+            long mask = spanMask(word, firstWord, lastWord, left, right);
+            long candidates = open[rowStart + word] & ~visited[rowStart + word] & mask;
+            long starts = candidates & ~(candidates << 1 | carry);
+            carry = candidates >>> 63;
+            while (starts != 0) {
+                push((word << 6) + Long.numberOfTrailingZeros(starts), row);
+                starts &= starts - 1;
+            }
+        }
+    }
+
+    /**
+     * Sets the bits of [left, right] in the row a word at a time.
+     */
+    private void markVisited(int rowStart, int left, int right) {
+        int firstWord = left >>> 6;
+        int lastWord = right >>> 6;
+        for (int word = firstWord; word <= lastWord; word++) {
+            visited[rowStart + word] |= spanMask(word, firstWord, lastWord, left, right);
+        }
+    }
+
+    /**
+     * @return the bits of the word that lie within [left, right]
+     */
+    private static long spanMask(int word, int firstWord, int lastWord, int left, int right) {
+        long mask = -1L;
+        if (word == firstWord) {
+            mask &= -1L << left;
+        }
+        if (word == lastWord) {
+            mask &= -1L >>> (63 - (right & 63));
+        }
+        return mask;
+    }
+
+    private boolean isSet(long[] bits, int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    private void push(int x, int row) {
+        if (stackSize == stackX.length) {
+            stackX = Arrays.copyOf(stackX, stackSize * 2);
+            stackRows = Arrays.copyOf(stackRows, stackSize * 2);
+        }
+        stackX[stackSize] = x;
+        stackRows[stackSize] = row;
+        stackSize++;
+    }
+}
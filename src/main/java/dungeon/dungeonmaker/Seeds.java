@@ -0,0 +1,39 @@
+package dungeon.dungeonmaker;
+
+/**
+ * Derives independent seeds from a parent seed, so related dungeons
+ * (chunks, floors, retries) can be regenerated from a single 64-bit value.
+ */
+final class Seeds {
+
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private Seeds() {
+    }
+
+    /**
+     * @param seed the parent seed
+     * @param value what the derived seed is for, e.g. a coordinate
+     * @return a seed that is well mixed with respect to both arguments
+     */
+    static long derive(long seed, long value) {
+        return mix(seed + GOLDEN_GAMMA * (value + 1));
+    }
+
+    /**
+     * @param seed the parent seed
+     * @param a the first value the derived seed is for
+     * @param b the second value the derived seed is for
+     * @return a seed that is well mixed with respect to all arguments
+     */
+    static long derive(long seed, long a, long b) {
+        return derive(derive(seed, a), b);
+    }
+
+    // The SplitMix64 finalizer
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,42 @@
+package dungeon.dungeonmaker;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The SplitMix64 generator SplittableRandom uses, drawing exactly the same
+ * numbers from the same seed, but whose state can be copied. A copy draws
+ * the same numbers as the original from then on, without either one
+ * moving the other along.
+ */
+final class SplitMixRandom implements RandomGenerator {
+
+    // Instance variables
+    private long state;
+
+    /**
+     * @param seed the seed, drawing the same stream as new SplittableRandom(seed)
+     */
+    SplitMixRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * @return a generator at the same point in the stream as this one
+     */
+    SplitMixRandom copy() {
+        return new SplitMixRandom(state);
+    }
+
+    @Override
+    public long nextLong() {
+        return Seeds.mix(state += Seeds.GOLDEN_GAMMA);
+    }
+
+    @Override
+    public int nextInt() {
+        // The 32-bit finalizer SplittableRandom uses for ints
+        long z = state += Seeds.GOLDEN_GAMMA;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+}
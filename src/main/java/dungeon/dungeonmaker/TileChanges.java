@@ -0,0 +1,53 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+
+/**
+ * A list of tile coordinates whose TileType changed,
+ * so a view can update only those tiles.
+ */
+public class TileChanges {
+
+    // Instance variables
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int size;
+
+    /**
+     * Records that the tile at (x, y) changed.
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     */
+    public void add(int x, int y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * @return the number of changed tiles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the index of a change
+     * @return the x coordinate of the changed tile
+     */
+    public int getX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * @param i the index of a change
+     * @return the y coordinate of the changed tile
+     */
+    public int getY(int i) {
+        return ys[i];
+    }
+}
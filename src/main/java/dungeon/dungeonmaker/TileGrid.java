@@ -0,0 +1,26 @@
+package dungeon.dungeonmaker;
+
+/**
+ * Read-only view of a rectangular grid of tiles.
+ * Renderers and other consumers of a finished dungeon
+ * should depend on this rather than on a concrete map.
+ */
+public interface TileGrid {
+
+    /**
+     * @return the width of the grid in tiles
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the grid in tiles
+     */
+    int getHeight();
+
+    /**
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @return the TileType of the tile at (x, y)
+     */
+    TileType getType(int x, int y);
+}
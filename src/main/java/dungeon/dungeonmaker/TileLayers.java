@@ -0,0 +1,400 @@
+package dungeon.dungeonmaker;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Tile map stored as one bit layer per TileType, for bulk work over many maps.
+ * <p>
+ * Each layer is a long[] with one bit per tile, and every row starts on a
+ * new word, with the bits past the end of a row always clear, so filling
+ * a rectangle, counting tiles of a type, or combining two maps touches
+ * 64 tiles per operation. Every tile is set in exactly one layer. A 60x30
+ * map takes 720 bytes for all three layers, and statistics such as the
+ * floor ratio or the overlap of two maps are a few popcounts.
+ * Coordinates outside the map throw IndexOutOfBoundsException, as they
+ * do for a TileMap.
+ */
+public class TileLayers implements TileGrid {
+
+    private static final TileType[] TYPES = TileType.values();
+    private static final int WALL = TileType.WALL.ordinal();
+    // The lowest bit of each byte of a long
+    private static final long LOWEST_BITS = 0x0101010101010101L;
+
+    static {
+        // copyFrom splits ordinals into two bit planes
+        if (TYPES.length > 4) {
+            throw new AssertionError("TileLayers supports at most 4 tile types");
+        }
+    }
+
+    // Instance variables
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[][] layers;
+
+    /**
+     * Creates new layers with every tile a wall.
+     * @param width the width of the map in tiles
+     * @param height the height of the map in tiles
+     */
+    public TileLayers(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                    "Map size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.layers = new long[TYPES.length][Math.multiplyExact(wordsPerRow, height)];
+        fill(TileType.WALL);
+    }
+
+    /**
+     * @param grid the tiles to copy
+     * @return layers holding the same tiles as the grid
+     */
+    public static TileLayers of(TileGrid grid) {
+        TileLayers layers = new TileLayers(grid.getWidth(), grid.getHeight());
+        layers.copyFrom(grid);
+        return layers;
+    }
+
+    /**
+     * Replaces every tile with the tile at the same place in the grid.
+     * @param grid the tiles to copy, the same size as these layers
+     */
+    public void copyFrom(TileGrid grid) {
+        checkSameSize(grid);
+        if (!(grid instanceof TileMap)) {
+            // Packed maps overwrite every word, other grids only set bits
+            for (long[] layer : layers) {
+                Arrays.fill(layer, 0);
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * wordsPerRow;
+            if (grid instanceof TileMap map) {
+                // Gather the two bits of each ordinal into two planes, a word at a time,
+                // then pick each layer out of the planes with a few logic operations
+                int index = map.index(0, y);
+                for (int word = 0; word < wordsPerRow; word++) {
+                    int start = word << 6;
+                    int end = Math.min(width, start + 64);
+                    long low = 0;
+                    long high = 0;
+                    int x = start;
+                    for (; x + 8 <= end; x += 8) {
+                        long ordinals = map.ordinalsAt(index + x);
+                        low |= gatherBytes(ordinals & LOWEST_BITS) << (x & 63);
+                        high |= gatherBytes(ordinals >>> 1 & LOWEST_BITS) << (x & 63);
+                    }
+                    for (; x < end; x++) {
+                        int ordinal = map.ordinalAt(index + x);
+                        low |= (long) (ordinal & 1) << x;
+                        high |= (long) (ordinal >>> 1) << x;
+                    }
+                    long inRow = -1L >>> (64 - (end - start));
+                    for (int i = 0; i < layers.length; i++) {
+                        long bits = ((i & 1) != 0 ? low : ~low) & ((i & 2) != 0 ? high : ~high);
+                        layers[i][rowStart + word] = bits & inRow;
+                    }
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    layers[grid.getType(x, y).ordinal()][rowStart + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public TileType getType(int x, int y) {
+        checkTile(x, y);
+        int word = y * wordsPerRow + (x >>> 6);
+        long bit = 1L << x;
+        for (int i = 0; i < TYPES.length; i++) {
+            if ((layers[i][word] & bit) != 0) {
+                return TYPES[i];
+            }
+        }
+        throw new IllegalStateException("Tile (" + x + ", " + y + ") is in no layer");
+    }
+
+    /**
+     * Sets the type of the tile at (x, y).
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param type TileType to set the tile to
+     */
+    public void setType(int x, int y, TileType type) {
+        checkTile(x, y);
+        int word = y * wordsPerRow + (x >>> 6);
+        long bit = 1L << x;
+        for (long[] layer : layers) {
+            layer[word] &= ~bit;
+        }
+        layers[type.ordinal()][word] |= bit;
+    }
+
+    /**
+     * Sets every tile to the given type.
+     * @param type TileType to set the tiles to
+     */
+    public void fill(TileType type) {
+        fillRect(0, 0, width, height, type);
+    }
+
+    /**
+     * Sets every tile in a rectangle to the given type, a word at a time.
+     * @param x the x coordinate of the top left tile
+     * @param y the y coordinate of the top left tile
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @param type TileType to set the tiles to
+     */
+    public void fillRect(int x, int y, int w, int h, TileType type) {
+        Objects.checkFromIndexSize(x, w, width);
+        Objects.checkFromIndexSize(y, h, height);
+        if (w == 0 || h == 0) {
+            return;
+        }
+        int last = x + w - 1;
+        int firstWord = x >>> 6;
+        int lastWord = last >>> 6;
+        long firstMask = -1L << x;
+        long lastMask = -1L >>> (63 - (last & 63));
+        int typeIndex = type.ordinal();
+        for (int row = y; row < y + h; row++) {
+            int rowStart = row * wordsPerRow;
+            for (int word = firstWord; word <= lastWord; word++) {
+                long mask = -1L;
+                if (word == firstWord) {
+                    mask &= firstMask;
+                }
+                if (word == lastWord) {
+                    mask &= lastMask;
+                }
+                for (int i = 0; i < layers.length; i++) {
+                    if (i == typeIndex) {
+                        layers[i][rowStart + word] |= mask;
+                    } else {
+                        layers[i][rowStart + word] &= ~mask;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Carves every wall tile set in the mask into floor, leaving
+     * other tiles alone, e.g. to lay down a whole corridor at once.
+     * @param mask the tiles to open, the same size as these layers
+     */
+    public void carve(TileLayers mask) {
+        checkSameSize(mask);
+        long[] wall = layers[TileType.WALL.ordinal()];
+        long[] floor = layers[TileType.FLOOR.ordinal()];
+        for (int i = 0; i < wall.length; i++) {
+            long opened = wall[i] & mask.openWord(i);
+            wall[i] &= ~opened;
+            floor[i] |= opened;
+        }
+    }
+
+    /**
+     * Opens every wall tile that is open in the other map, giving it the
+     * other map's type, so the open tiles become the union of both maps'.
+     * Tiles that are already open keep their type.
+     * @param other layers of the same size
+     */
+    public void union(TileLayers other) {
+        checkSameSize(other);
+        long[] wall = layers[WALL];
+        for (int word = 0; word < wall.length; word++) {
+            long opened = wall[word] & other.openWord(word);
+            wall[word] &= ~opened;
+            for (int i = 0; i < layers.length; i++) {
+                if (i != WALL) {
+                    layers[i][word] |= other.layers[i][word] & opened;
+                }
+            }
+        }
+    }
+
+    /**
+     * Walls up every open tile that is a wall in the other map,
+     * so the open tiles become the intersection of both maps'.
+     * @param other layers of the same size
+     */
+    public void intersect(TileLayers other) {
+        checkSameSize(other);
+        long[] wall = layers[WALL];
+        long[] otherWall = other.layers[WALL];
+        for (int word = 0; word < wall.length; word++) {
+            long closed = ~wall[word] & otherWall[word];
+            wall[word] |= closed;
+            for (int i = 0; i < layers.length; i++) {
+                if (i != WALL) {
+                    layers[i][word] &= ~closed;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param type the type of tile to count
+     * @return the number of tiles of the type
+     */
+    public long count(TileType type) {
+        long count = 0;
+        for (long word : layers[type.ordinal()]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of floor and center tiles
+     */
+    public long countOpen() {
+        return Math.multiplyExact((long) width, height) - count(TileType.WALL);
+    }
+
+    /**
+     * @return the share of tiles that are floor or center, between 0 and 1
+     */
+    public double getOpenRatio() {
+        return (double) countOpen() / ((long) width * height);
+    }
+
+    /**
+     * @param other layers of the same size
+     * @param type the type of tile to compare
+     * @return the number of places where both maps have a tile of the type
+     */
+    public long countOverlap(TileLayers other, TileType type) {
+        checkSameSize(other);
+        long[] a = layers[type.ordinal()];
+        long[] b = other.layers[type.ordinal()];
+        long count = 0;
+        for (int i = 0; i < a.length; i++) {
+            count += Long.bitCount(a[i] & b[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @param other layers of the same size
+     * @return the number of places where both maps are open
+     */
+    public long countOpenOverlap(TileLayers other) {
+        checkSameSize(other);
+        long count = 0;
+        for (int i = 0; i < layers[0].length; i++) {
+            count += Long.bitCount(openWord(i) & other.openWord(i));
+        }
+        return count;
+    }
+
+    /**
+     * Writes the tiles into a TileMap of the same size.
+     * @param map the map to write into
+     */
+    public void copyTo(TileMap map) {
+        checkSameSize(map);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                map.setType(x, y, getType(x, y));
+            }
+        }
+    }
+
+    /**
+     * Writes only the open layer of a map, the bits that {@link #openWord}
+     * would give for layers copied from it, for callers such as a flood
+     * fill that need nothing else.
+     * @param map the tiles to read
+     * @param open receives the open bits, laid out like a layer
+     * @return the number of open tiles
+     */
+    static long copyOpenWords(TileMap map, long[] open) {
+        int width = map.getWidth();
+        int wordsPerRow = (width + 63) >>> 6;
+        long count = 0;
+        for (int y = 0; y < map.getHeight(); y++) {
+            int index = map.index(0, y);
+            for (int word = 0; word < wordsPerRow; word++) {
+                int start = word << 6;
+                int end = Math.min(width, start + 64);
+                long bits = 0;
+                int x = start;
+                for (; x + 8 <= end; x += 8) {
+                    // Any ordinal but the wall's 0 leaves a bit set in the lowest two of its byte
+                    long ordinals = map.ordinalsAt(index + x);
+                    bits |= gatherBytes((ordinals | ordinals >>> 1) & LOWEST_BITS) << (x & 63);
+                }
+                for (; x < end; x++) {
+                    bits |= (map.ordinalAt(index + x) != WALL ? 1L : 0) << x;
+                }
+                open[y * wordsPerRow + word] = bits;
+                count += Long.bitCount(bits);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param bytes a long whose bytes are each 0 or 1
+     * @return the eight bytes packed into the lowest eight bits, the lowest byte in bit 0
+     */
+    private static long gatherBytes(long bytes) {
+        // Every byte lands in the top byte at a different bit, with no carries
+        return bytes * 0x0102040810204080L >>> 56;
+    }
+
+    /**
+     * @return the number of words each row of a layer takes
+     */
+    int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * @param word the index of a word of a layer, row by row
+     * @return the word with a bit set for every tile in it that is not a wall
+     */
+    long openWord(int word) {
+        long open = 0;
+        for (int i = 0; i < layers.length; i++) {
+            if (i != WALL) {
+                open |= layers[i][word];
+            }
+        }
+        return open;
+    }
+
+    private void checkTile(int x, int y) {
+        Objects.checkIndex(x, width);
+        Objects.checkIndex(y, height);
+    }
+
+    private void checkSameSize(TileGrid other) {
+        if (other.getWidth() != width || other.getHeight() != height) {
+            throw new IllegalArgumentException("Expected a " + width + "x" + height + " map, got "
+                    + other.getWidth() + "x" + other.getHeight());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package dungeon.dungeonmaker;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Headless tile map backed by a packed byte array.
+ * Each tile is stored as the ordinal of its TileType in row-major
+ * order, so a map costs one byte per tile and needs no JavaFX classes.
+ * Coordinates outside the map throw IndexOutOfBoundsException rather
+ * than wrapping into the neighbouring row.
+ */
+public class TileMap implements TileGrid {
+
+    // static final variables
+    private static final VarHandle EIGHT_TILES =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // Instance variables
+    private final int width;
+    private final int height;
+    private final byte[] tiles;
+
+    /**
+     * Creates a new map filled entirely with walls.
+     * @param width the width of the map in tiles
+     * @param height the height of the map in tiles
+     */
+    public TileMap(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                    "Map size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        // WALL is ordinal 0, so a fresh array is already all walls
+        this.tiles = new byte[Math.multiplyExact(width, height)];
+    }
+
+    /**
+     * Creates a copy of another map.
+     * @param other the map to copy
+     */
+    public TileMap(TileMap other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.tiles = other.tiles.clone();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public TileType getType(int x, int y) {
+        checkTile(x, y);
+        return TileType.fromOrdinal(tiles[index(x, y)]);
+    }
+
+    /**
+     * Sets the type of the tile at (x, y).
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @param type TileType to set the tile to
+     */
+    public void setType(int x, int y, TileType type) {
+        checkTile(x, y);
+        tiles[index(x, y)] = (byte) type.ordinal();
+    }
+
+    /**
+     * Sets every tile in the map to the given type.
+     * @param type TileType to fill the map with
+     */
+    public void fill(TileType type) {
+        Arrays.fill(tiles, (byte) type.ordinal());
+    }
+
+    /**
+     * Sets every tile in the given rectangle to the given type.
+     * @param x the x coordinate of the top left tile
+     * @param y the y coordinate of the top left tile
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @param type TileType to fill the rectangle with
+     */
+    public void fillRect(int x, int y, int w, int h, TileType type) {
+        checkRect(x, y, w, h);
+        byte ordinal = (byte) type.ordinal();
+        for (int row = y; row < y + h; row++) {
+            int start = index(x, row);
+            Arrays.fill(tiles, start, start + w, ordinal);
+        }
+    }
+
+    /**
+     * @param x the x coordinate of the top left tile
+     * @param y the y coordinate of the top left tile
+     * @param w the width of the rectangle
+     * @param h the height of the rectangle
+     * @return a new map holding a copy of the tiles in the rectangle
+     */
+    public TileMap copyRect(int x, int y, int w, int h) {
+        checkRect(x, y, w, h);
+        TileMap copy = new TileMap(w, h);
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(tiles, index(x, y + row), copy.tiles, row * w, w);
+        }
+        return copy;
+    }
+
+    private void checkTile(int x, int y) {
+        Objects.checkIndex(x, width);
+        Objects.checkIndex(y, height);
+    }
+
+    private void checkRect(int x, int y, int w, int h) {
+        Objects.checkFromIndexSize(x, w, width);
+        Objects.checkFromIndexSize(y, h, height);
+    }
+
+    /**
+     * Unchecked, for callers that have already kept (x, y) inside the map.
+     * @param x the x coordinate of a tile
+     * @param y the y coordinate of a tile
+     * @return the index of the tile in the backing array
+     */
+    int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * @param index the index of a tile in the backing array
+     * @return the ordinal of the tile's TileType
+     */
+    int ordinalAt(int index) {
+        return tiles[index];
+    }
+
+    /**
+     * @param index the index of the first of eight tiles in the backing array,
+     *              no more than the number of tiles minus eight
+     * @return the ordinals of the eight tiles from index on, the first in the lowest byte
+     */
+    long ordinalsAt(int index) {
+        return (long) EIGHT_TILES.get(tiles, index);
+    }
+}
@@ -0,0 +1,136 @@
+package dungeon.dungeonmaker;
+
+/**
+ * Max-reduced mipmap pyramid of the tile types of a TileGrid.
+ * <p>
+ * Level 0 holds the ordinal of every tile. Each cell of level k + 1 holds
+ * the highest ordinal of the up to 2x2 cells below it, so a cell covering
+ * 2^k x 2^k tiles is open if any one of them is, and a one-tile corridor
+ * survives every level. A rectangle of tiles is then read from a handful
+ * of cells of the level whose cells are about as large as the rectangle,
+ * however many tiles it covers. Those cells may reach up to one cell past
+ * the rectangle, so like any mipmap the result can pick up a neighbouring
+ * tile, but it never misses one inside.
+ */
+final class TilePyramid {
+
+    private static final int HIGHEST = TileType.values().length - 1;
+
+    // Instance variables
+    private final int[] widths;
+    private final int[] heights;
+    private final byte[][] levels;
+
+    /**
+     * Builds the pyramid, reading every tile of the grid once.
+     * @param grid the tiles to reduce
+     */
+    TilePyramid(TileGrid grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int count = 1;
+        while ((width - 1) >> (count - 1) > 0 || (height - 1) >> (count - 1) > 0) {
+            count++;
+        }
+        widths = new int[count];
+        heights = new int[count];
+        levels = new byte[count][];
+
+        byte[] base = new byte[Math.multiplyExact(width, height)];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                base[i] = (byte) grid.getType(x, y).ordinal();
+            }
+        }
+        widths[0] = width;
+        heights[0] = height;
+        levels[0] = base;
+
+        for (int k = 1; k < count; k++) {
+            int belowWidth = widths[k - 1];
+            int belowHeight = heights[k - 1];
+            byte[] below = levels[k - 1];
+            int levelWidth = (belowWidth + 1) >> 1;
+            int levelHeight = (belowHeight + 1) >> 1;
+            byte[] level = new byte[levelWidth * levelHeight];
+            for (int y = 0; y < levelHeight; y++) {
+                int top = 2 * y * belowWidth;
+                // The last row or column of an odd-sized level has no partner
+                int bottom = 2 * y + 1 < belowHeight ? top + belowWidth : top;
+                for (int x = 0; x < levelWidth; x++) {
+                    int left = 2 * x;
+                    int right = left + 1 < belowWidth ? left + 1 : left;
+                    level[y * levelWidth + x] = (byte) Math.max(
+                            Math.max(below[top + left], below[top + right]),
+                            Math.max(below[bottom + left], below[bottom + right]));
+                }
+            }
+            widths[k] = levelWidth;
+            heights[k] = levelHeight;
+            levels[k] = level;
+        }
+    }
+
+    /**
+     * Finds the highest tile ordinal over the cells covering a rectangle,
+     * which must lie inside the grid. The cells are the largest no larger
+     * than the rectangle, so at most 3 are read along its shorter side.
+     * @param minX the x coordinate of the leftmost tile
+     * @param minY the y coordinate of the topmost tile
+     * @param maxX the x coordinate of the rightmost tile
+     * @param maxY the y coordinate of the bottommost tile
+     * @return the highest ordinal of any tile in the rectangle or the
+     *         parts of its covering cells outside it
+     */
+    int maxOrdinal(int minX, int minY, int maxX, int maxY) {
+        int span = Math.min(maxX - minX, maxY - minY) + 1;
+        // The largest cells that are no larger than the rectangle
+        int k = Math.min(levels.length - 1, 31 - Integer.numberOfLeadingZeros(span));
+        byte[] level = levels[k];
+        int levelWidth = widths[k];
+        int best = 0;
+        for (int y = minY >> k; y <= maxY >> k; y++) {
+            int row = y * levelWidth;
+            for (int x = minX >> k; x <= maxX >> k; x++) {
+                best = Math.max(best, level[row + x]);
+            }
+            if (best == HIGHEST) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of levels, the last of which is a single cell
+     */
+    int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * @param level a level of the pyramid
+     * @param x the x coordinate of a cell of the level
+     * @param y the y coordinate of a cell of the level
+     * @return the highest ordinal of the tiles the cell covers
+     */
+    int ordinalAt(int level, int x, int y) {
+        return levels[level][y * widths[level] + x];
+    }
+
+    /**
+     * @param level a level of the pyramid
+     * @return the width of the level in cells
+     */
+    int getWidth(int level) {
+        return widths[level];
+    }
+
+    /**
+     * @param level a level of the pyramid
+     * @return the height of the level in cells
+     */
+    int getHeight(int level) {
+        return heights[level];
+    }
+}
@@ -0,0 +1,45 @@
+package dungeon.dungeonmaker;
+
+/**
+ * The kinds of tile a dungeon map is made of.
+ * The ordinal of each type is what gets stored in a {@link TileMap},
+ * so new types must only ever be appended.
+ */
+public enum TileType {
+    WALL('#', 0x000000),
+    FLOOR('.', 0xFFFFFF),
+    CENTER('+', 0xFF0000);
+
+    private static final TileType[] TYPES = values();
+
+    // Instance variables
+    private final char symbol;
+    private final int rgb;
+
+    TileType(char symbol, int rgb) {
+        this.symbol = symbol;
+        this.rgb = rgb;
+    }
+
+    /**
+     * @return the character the tile is drawn as in text output
+     */
+    public char getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the color the tile is drawn in, on screen and in images, as 0xRRGGBB
+     */
+    public int getRgb() {
+        return rgb;
+    }
+
+    /**
+     * @param ordinal the ordinal of a TileType
+     * @return the TileType with the given ordinal
+     */
+    public static TileType fromOrdinal(int ordinal) {
+        return TYPES[ordinal];
+    }
+}
@@ -0,0 +1,59 @@
+package dungeon.dungeonmaker;
+
+/**
+ * Disjoint sets over the ints 0..n-1, with union by size
+ * and path halving, so each operation is effectively constant time.
+ */
+final class UnionFind {
+
+    // Instance variables
+    private final int[] parent;
+    private final int[] size;
+
+    /**
+     * Creates n singleton sets.
+     * @param n the number of elements
+     */
+    UnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    /**
+     * @param i an element
+     * @return the representative of the set holding the element
+     */
+    int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Merges the sets holding the two elements.
+     * @param a an element
+     * @param b another element
+     * @return true if the elements were in different sets
+     */
+    boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (size[rootA] < size[rootB]) {
+            int temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        return true;
+    }
+}
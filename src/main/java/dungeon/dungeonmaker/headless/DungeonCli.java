@@ -0,0 +1,183 @@
+package dungeon.dungeonmaker.headless;
+
+import dungeon.dungeonmaker.BatchGenerator;
+import dungeon.dungeonmaker.DungeonFormat;
+import dungeon.dungeonmaker.DungeonSnapshot;
+import dungeon.dungeonmaker.GridDungeon;
+import dungeon.dungeonmaker.TileGrid;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Headless command-line entry point that generates a single dungeon and
+ * writes it to stdout or a file, for build scripts and other tools.
+ * <p>
+ * Nothing in this package touches JavaFX, and the module only needs
+ * JavaFX for the GUI, so the toolkit, FXML, stylesheet and fonts are never
+ * loaded and need not even be on the module path. A run costs little more
+ * than JVM start-up and generation:
+ * <pre>
+ *   java -p target/classes -m dungeon.dungeonmaker/dungeon.dungeonmaker.headless.DungeonCli --seed 42 --format png --out dungeon.png
+ * </pre>
+ * Run with --help for every option. Exits with 2 on bad options and 1
+ * when the output cannot be written.
+ */
+public final class DungeonCli {
+
+    // static final variables
+    private static final int DEFAULT_WIDTH = 60;
+    private static final int DEFAULT_HEIGHT = 30;
+    private static final int DEFAULT_SCALE = 8;
+    private static final String STDOUT = "-";
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: DungeonCli [options]",
+            "  --seed N         seed to generate from, random if not given",
+            "  --width N        width in tiles, default " + DEFAULT_WIDTH,
+            "  --height N       height in tiles, default " + DEFAULT_HEIGHT,
+            "  --sections-x N   room sections across, default " + GridDungeon.DEFAULT_SECTIONS_X,
+            "  --sections-y N   room sections down, default " + GridDungeon.DEFAULT_SECTIONS_Y,
+            "  --retries N      most times to regenerate a dungeon with unreachable rooms, default "
+                    + BatchGenerator.DEFAULT_MAX_RETRIES,
+            "  --format F       ascii, binary, json or png, default ascii",
+            "  --scale N        pixels per tile in png output, default " + DEFAULT_SCALE,
+            "  --out FILE       file to write to, default - for stdout");
+
+    // Instance variables
+    private long seed = new SplittableRandom().nextLong();
+    private int width = DEFAULT_WIDTH;
+    private int height = DEFAULT_HEIGHT;
+    private int sectionsX = GridDungeon.DEFAULT_SECTIONS_X;
+    private int sectionsY = GridDungeon.DEFAULT_SECTIONS_Y;
+    private int retries = BatchGenerator.DEFAULT_MAX_RETRIES;
+    private String format = "ascii";
+    private int scale = DEFAULT_SCALE;
+    private String out = STDOUT;
+
+    private DungeonCli() {
+    }
+
+    /**
+     * Generates a dungeon as the options describe and writes it out.
+     * @param args the command-line options
+     */
+    public static void main(String[] args) {
+        DungeonCli cli = new DungeonCli();
+        byte[] output;
+        try {
+            if (!cli.parse(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+            output = cli.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            if (STDOUT.equals(cli.out)) {
+                OutputStream stdout = System.out;
+                stdout.write(output);
+                stdout.flush();
+            } else {
+                Files.write(Path.of(cli.out), output);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write " + cli.out + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the options into this CLI's settings.
+     * @param args the command-line options
+     * @return false if help was asked for instead
+     */
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--help".equals(option) || "-h".equals(option)) {
+                return false;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--seed" -> seed = parseLong(option, value);
+                case "--width" -> width = parseInt(option, value);
+                case "--height" -> height = parseInt(option, value);
+                case "--sections-x" -> sectionsX = parseInt(option, value);
+                case "--sections-y" -> sectionsY = parseInt(option, value);
+                case "--retries" -> retries = parseInt(option, value);
+                case "--format" -> format = value;
+                case "--scale" -> scale = parseInt(option, value);
+                case "--out" -> out = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the generated dungeon, encoded in the chosen format
+     */
+    private byte[] run() {
+        // Checked up front so a typo does not cost a generation
+        if (!format.equals("ascii") && !format.equals("binary")
+                && !format.equals("json") && !format.equals("png")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        if (format.equals("png")) {
+            DungeonPng.checkSize(width, height, scale);
+        }
+        GridDungeon dungeon = new GridDungeon(width, height, sectionsX, sectionsY, seed);
+        dungeon.generateConnected(retries);
+        DungeonSnapshot snapshot = dungeon.snapshot();
+        return switch (format) {
+            case "binary" -> DungeonFormat.encode(snapshot);
+            case "json" -> DungeonJson.encode(snapshot).getBytes(StandardCharsets.UTF_8);
+            case "png" -> DungeonPng.encode(snapshot, scale);
+            default -> ascii(snapshot);
+        };
+    }
+
+    /**
+     * @return one line per row of tiles, one symbol per tile
+     */
+    private static byte[] ascii(TileGrid grid) {
+        int width = grid.getWidth();
+        byte[] text = new byte[(width + 1) * grid.getHeight()];
+        int i = 0;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                text[i++] = (byte) grid.getType(x, y).getSymbol();
+            }
+            text[i++] = '\n';
+        }
+        return text;
+    }
+
+    private static int parseInt(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + option + " is not a number: " + value);
+        }
+    }
+
+    private static long parseLong(String option, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + option + " is not a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package dungeon.dungeonmaker.headless;
+
+import dungeon.dungeonmaker.DungeonRoom;
+import dungeon.dungeonmaker.DungeonSnapshot;
+import dungeon.dungeonmaker.TileType;
+
+/**
+ * Writes dungeons as JSON, for tools that cannot read the binary format.
+ * <p>
+ * The tiles are written as one string per row, one symbol per tile
+ * (see {@link TileType#getSymbol()}), which keeps the output readable
+ * and close to the size of the map itself:
+ * <pre>
+ *   {"seed":1,"width":60,"height":30,"sectionsX":4,"sectionsY":2,
+ *    "startingRoom":0,"rooms":[{"section":0,"containsRoom":true,...}],
+ *    "rows":["####...", ...]}
+ * </pre>
+ */
+public final class DungeonJson {
+
+    private DungeonJson() {
+    }
+
+    /**
+     * @param dungeon the dungeon to encode
+     * @return the dungeon as a JSON object
+     */
+    public static String encode(DungeonSnapshot dungeon) {
+        int width = dungeon.getWidth();
+        int height = dungeon.getHeight();
+        StringBuilder json = new StringBuilder(256 + dungeon.getRoomCount() * 128 + height * (width + 4));
+        json.append("{\"seed\":").append(dungeon.getSeed())
+                .append(",\"width\":").append(width)
+                .append(",\"height\":").append(height)
+                .append(",\"sectionsX\":").append(dungeon.getSectionsX())
+                .append(",\"sectionsY\":").append(dungeon.getSectionsY())
+                .append(",\"startingRoom\":").append(dungeon.getStartingRoomIndex());
+
+        json.append(",\"rooms\":[");
+        for (int i = 0; i < dungeon.getRoomCount(); i++) {
+            DungeonRoom room = dungeon.getRoom(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"section\":").append(i)
+                    .append(",\"containsRoom\":").append(room.containsRoom())
+                    .append(",\"centerX\":").append(room.getCenterX())
+                    .append(",\"centerY\":").append(room.getCenterY())
+                    .append(",\"originX\":").append(room.getOriginX())
+                    .append(",\"originY\":").append(room.getOriginY())
+                    .append(",\"width\":").append(room.getWidth())
+                    .append(",\"height\":").append(room.getHeight())
+                    .append('}');
+        }
+
+        // Tile symbols never need escaping
+        json.append("],\"rows\":[");
+        for (int y = 0; y < height; y++) {
+            if (y > 0) {
+                json.append(',');
+            }
+            json.append('"');
+            for (int x = 0; x < width; x++) {
+                json.append(dungeon.getType(x, y).getSymbol());
+            }
+            json.append('"');
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,145 @@
+package dungeon.dungeonmaker.headless;
+
+import dungeon.dungeonmaker.TileGrid;
+import dungeon.dungeonmaker.TileType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes dungeons as PNG images, one square block of pixels per tile.
+ * <p>
+ * The image is palette based, one palette entry per TileType, so each
+ * pixel is the TileType's ordinal. It is encoded by hand rather than
+ * through ImageIO, which keeps the AWT and ImageIO start-up out of
+ * headless runs.
+ */
+public final class DungeonPng {
+
+    // static final variables
+    public static final int MAX_SCALE = 64;
+    // The most bytes of scanlines, a filter byte then a byte per pixel each, in an image
+    public static final int MAX_IMAGE_BYTES = 1 << 28;
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int COLOR_TYPE_PALETTE = 3;
+
+    private DungeonPng() {
+    }
+
+    /**
+     * @param grid the tiles to draw
+     * @param scale the width and height of a tile in pixels
+     * @return the tiles as a PNG image
+     * @throws IllegalArgumentException if the scale is out of range, or the
+     *         image would have more than MAX_IMAGE_BYTES of scanlines
+     */
+    public static byte[] encode(TileGrid grid, int scale) {
+        // Checked before allocating, so a large scale fails here instead of running out of memory
+        checkSize(grid.getWidth(), grid.getHeight(), scale);
+        int width = grid.getWidth() * scale;
+        int height = grid.getHeight() * scale;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(SIGNATURE);
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+            DataOutputStream out = new DataOutputStream(header);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeByte(8);
+            out.writeByte(COLOR_TYPE_PALETTE);
+            out.writeByte(0);
+            out.writeByte(0);
+            out.writeByte(0);
+            writeChunk(bytes, "IHDR", header.toByteArray());
+
+            // The colors the tiles are drawn in on screen
+            TileType[] types = TileType.values();
+            byte[] palette = new byte[types.length * 3];
+            for (int i = 0; i < types.length; i++) {
+                int rgb = types[i].getRgb();
+                palette[i * 3] = (byte) (rgb >> 16);
+                palette[i * 3 + 1] = (byte) (rgb >> 8);
+                palette[i * 3 + 2] = (byte) rgb;
+            }
+            writeChunk(bytes, "PLTE", palette);
+
+            // Each scanline is a filter type byte, 0 for none, then its pixels;
+            // a tile row becomes scale identical scanlines
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(data, deflater)) {
+                byte[] scanline = new byte[width + 1];
+                for (int y = 0; y < grid.getHeight(); y++) {
+                    for (int x = 0; x < grid.getWidth(); x++) {
+                        byte ordinal = (byte) grid.getType(x, y).ordinal();
+                        for (int i = 0; i < scale; i++) {
+                            scanline[1 + x * scale + i] = ordinal;
+                        }
+                    }
+                    for (int i = 0; i < scale; i++) {
+                        deflated.write(scanline);
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+            writeChunk(bytes, "IDAT", data.toByteArray());
+            writeChunk(bytes, "IEND", new byte[0]);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Only in-memory streams are written to
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param tilesWide the width of the map in tiles
+     * @param tilesHigh the height of the map in tiles
+     * @param scale the width and height of a tile in pixels
+     * @throws IllegalArgumentException if the map cannot be drawn at the scale
+     */
+    static void checkSize(int tilesWide, int tilesHigh, int scale) {
+        if (scale <= 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale must be between 1 and " + MAX_SCALE + ": " + scale);
+        }
+        long imageBytes = (long) tilesHigh * scale * ((long) tilesWide * scale + 1);
+        if (imageBytes > MAX_IMAGE_BYTES) {
+            throw new IllegalArgumentException("A " + tilesWide + "x" + tilesHigh + " map at scale "
+                    + scale + " would be larger than " + MAX_IMAGE_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Writes the tiles to a file as a PNG image.
+     * @param grid the tiles to draw
+     * @param scale the width and height of a tile in pixels
+     * @param path the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void write(TileGrid grid, int scale, Path path) throws IOException {
+        Files.write(path, encode(grid, scale));
+    }
+
+    // Length, type, data, then the CRC of the type and data
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) throws IOException {
+        DataOutputStream chunk = new DataOutputStream(out);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        chunk.writeInt(data.length);
+        chunk.write(typeBytes);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+        chunk.flush();
+    }
+}
@@ -1,8 +1,12 @@
 module dungeon.dungeonmaker {
-    requires javafx.controls;
-    requires javafx.fxml;
+    // Only the GUI needs JavaFX, so the headless entry points run without it on the module path
+    requires static javafx.controls;
+    requires static javafx.fxml;
+    requires java.management;
+    requires jdk.httpserver;
 
 
     opens dungeon.dungeonmaker to javafx.fxml;
     exports dungeon.dungeonmaker;
+    exports dungeon.dungeonmaker.headless;
 }
\ No newline at end of file
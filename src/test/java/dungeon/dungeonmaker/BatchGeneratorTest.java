@@ -0,0 +1,72 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchGeneratorTest {
+
+    private static final DungeonParameters PARAMETERS = new DungeonParameters(120, 60, 8, 4);
+
+    @Test
+    void batchMatchesGeneratingEachSeedAlone() {
+        int count = 500;
+        long firstSeed = 300;
+        // Keyed by the seed each dungeon ended up with, as retries derive a new one
+        Map<Long, byte[]> expected = new HashMap<>();
+        for (long seed = firstSeed; seed < firstSeed + count; seed++) {
+            GridDungeon dungeon = PARAMETERS.newDungeon(seed);
+            dungeon.generateConnected(BatchGenerator.DEFAULT_MAX_RETRIES);
+            DungeonSnapshot snapshot = dungeon.snapshot();
+            assertNull(expected.put(snapshot.getSeed(), DungeonFormat.encode(snapshot)));
+        }
+
+        for (int parallelism : new int[] { 1, 4 }) {
+            Map<Long, byte[]> batch = new ConcurrentHashMap<>();
+            try (BatchGenerator generator = new BatchGenerator(parallelism)) {
+                generator.generate(PARAMETERS, firstSeed, count, snapshot ->
+                        assertNull(batch.put(snapshot.getSeed(), DungeonFormat.encode(snapshot))));
+            }
+            assertEquals(count, batch.size());
+            for (Map.Entry<Long, byte[]> entry : expected.entrySet()) {
+                byte[] encoded = batch.get(entry.getKey());
+                assertNotNull(encoded, "seed " + entry.getKey());
+                assertArrayEquals(entry.getValue(), encoded, "seed " + entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    void batchedDungeonsAreConnected() {
+        try (BatchGenerator generator = new BatchGenerator(4)) {
+            generator.generate(PARAMETERS, 0, 200, snapshot -> {
+                // A snapshot's seed regenerates exactly the dungeon it holds
+                GridDungeon dungeon = PARAMETERS.newDungeon(snapshot.getSeed());
+                dungeon.generate();
+                assertArrayEquals(DungeonFormat.encode(dungeon.snapshot()), DungeonFormat.encode(snapshot));
+                assertTrue(dungeon.validate().isConnected(), "seed " + snapshot.getSeed());
+            });
+        }
+    }
+
+    @Test
+    void badArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchGenerator(1, -1));
+        try (BatchGenerator generator = new BatchGenerator(1)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> generator.generate(PARAMETERS, 0, -1, snapshot -> { }));
+            int[] seen = new int[1];
+            generator.generate(PARAMETERS, 0, 0, snapshot -> seen[0]++);
+            assertEquals(0, seen[0]);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CorridorRouterTest {
+
+    private static int countOpen(TileMap map) {
+        int open = 0;
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < map.getWidth(); x++) {
+                if (map.getType(x, y) != TileType.WALL) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Plain Dijkstra, pricing each step at the cost of the tile stepped
+     * onto, over the tiles allowed.
+     * @return the cost of a cheapest path, or -1 if there is none
+     */
+    private static long cheapest(TileMap costs, boolean[] allowed, int wallCost, int floorCost,
+                                 int startX, int startY, int endX, int endY) {
+        int width = costs.getWidth();
+        long[] distance = new long[width * costs.getHeight()];
+        Arrays.fill(distance, Long.MAX_VALUE);
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        distance[startY * width + startX] = 0;
+        queue.add(new long[] { 0, startY * width + startX });
+        int[][] steps = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int cell = (int) entry[1];
+            if (entry[0] > distance[cell]) {
+                continue;
+            }
+            if (cell == endY * width + endX) {
+                return entry[0];
+            }
+            for (int[] step : steps) {
+                int x = cell % width + step[0];
+                int y = cell / width + step[1];
+                if (x < 0 || y < 0 || x >= width || y >= costs.getHeight() || !allowed[y * width + x]) {
+                    continue;
+                }
+                long next = entry[0] + (costs.getType(x, y) == TileType.WALL ? wallCost : floorCost);
+                if (next < distance[y * width + x]) {
+                    distance[y * width + x] = next;
+                    queue.add(new long[] { next, y * width + x });
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void weightedCostCarvesACheapestCorridor() {
+        SplittableRandom random = new SplittableRandom(4);
+        int[][] costs = { { 1, 1 }, { 2, 1 }, { 3, 1 }, { 7, 2 }, { 1, 3 } };
+        CorridorRouter router = new CorridorRouter();
+        for (int trial = 0; trial < 300; trial++) {
+            TileMap map = new TileMap(30, 20);
+            // Scattered floor for a cheaper corridor to run along
+            for (int i = 0; i < 12; i++) {
+                int x = random.nextInt(30);
+                int y = random.nextInt(20);
+                map.fillRect(x, y, random.nextInt(1, 31 - x), random.nextInt(1, Math.min(3, 20 - y) + 1),
+                        TileType.FLOOR);
+            }
+            int[] cost = costs[trial % costs.length];
+            router.setCosts(cost[0], cost[1]);
+            int startX = random.nextInt(30);
+            int startY = random.nextInt(20);
+            int endX = random.nextInt(30);
+            int endY = random.nextInt(20);
+
+            boolean[] everywhere = new boolean[30 * 20];
+            Arrays.fill(everywhere, true);
+            long best = cheapest(map, everywhere, cost[0], cost[1], startX, startY, endX, endY);
+            TileMap original = new TileMap(map);
+            router.carve(map, startX, startY, endX, endY);
+
+            // Priced as before carving, the open tiles now hold a path as cheap as the best one
+            boolean[] open = new boolean[30 * 20];
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < 30; x++) {
+                    open[y * 30 + x] = map.getType(x, y) != TileType.WALL;
+                }
+            }
+            assertEquals(best, cheapest(original, open, cost[0], cost[1], startX, startY, endX, endY),
+                    "trial " + trial);
+        }
+    }
+
+    @Test
+    void uniformCostCarvesAShortestCorridor() {
+        TileMap map = new TileMap(40, 30);
+        CorridorRouter router = new CorridorRouter();
+        router.setCosts(1, 1);
+        int carved = router.carve(map, 3, 4, 30, 25);
+        assertEquals(27 + 21 + 1, carved);
+        assertEquals(carved, countOpen(map));
+        assertEquals(TileType.FLOOR, map.getType(3, 4));
+        assertEquals(TileType.FLOOR, map.getType(30, 25));
+    }
+
+    @Test
+    void corridorStaysInsideItsBounds() {
+        TileMap map = new TileMap(40, 30);
+        // A wall of floor the corridor would follow if it could leave its bounds
+        map.fillRect(0, 20, 40, 1, TileType.FLOOR);
+        CorridorRouter router = new CorridorRouter();
+        router.carve(map, 5, 5, 15, 10, 5, 5, 15, 10);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 40; x++) {
+                boolean inside = x >= 5 && x <= 15 && y >= 5 && y <= 10;
+                if (!inside) {
+                    assertEquals(TileType.WALL, map.getType(x, y), "tile " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dearWallMergesIntoExistingFloor() {
+        TileMap map = new TileMap(40, 30);
+        // An open row between the two ends
+        map.fillRect(2, 11, 36, 1, TileType.FLOOR);
+        CorridorRouter router = new CorridorRouter();
+        router.setCosts(4, 1);
+        int carved = router.carve(map, 2, 10, 37, 12);
+        // Onto the open row at one end and off it at the other
+        assertEquals(2, carved);
+    }
+
+    @Test
+    void rejectsSearchesWhoseCostCouldOverflow() {
+        TileMap map = new TileMap(2048, 1024);
+        CorridorRouter router = new CorridorRouter();
+        router.setCosts(1024, 1);
+        assertThrows(IllegalArgumentException.class, () -> router.carve(map, 0, 0, 2047, 1023));
+        assertEquals(0, countOpen(map));
+        // The same search fits within a narrow band
+        router.carve(map, 0, 0, 2047, 0, 0, 0, 2047, 0);
+        assertEquals(2048, countOpen(map));
+    }
+
+    @Test
+    void rejectsOutOfRangeCosts() {
+        CorridorRouter router = new CorridorRouter();
+        assertThrows(IllegalArgumentException.class, () -> router.setCosts(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> router.setCosts(1, 1025));
+    }
+}
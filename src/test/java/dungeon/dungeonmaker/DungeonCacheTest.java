@@ -0,0 +1,141 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DungeonCacheTest {
+
+    private static final DungeonParameters PARAMETERS = new DungeonParameters(60, 30);
+
+    private static byte[] generate(DungeonParameters parameters, long seed) {
+        GridDungeon dungeon = parameters.newDungeon(seed);
+        dungeon.generateConnected(BatchGenerator.DEFAULT_MAX_RETRIES);
+        return DungeonFormat.encode(dungeon.snapshot());
+    }
+
+    @Test
+    void cachesWhatTheBatchGenerates() {
+        DungeonParameters parameters = new DungeonParameters(120, 60, 8, 4);
+        int count = 100;
+        // Keyed by the seed each dungeon ended up with, as retries derive a new one
+        Map<Long, byte[]> batch = new ConcurrentHashMap<>();
+        try (BatchGenerator generator = new BatchGenerator(4)) {
+            generator.generate(parameters, 700, count, snapshot ->
+                    batch.put(snapshot.getSeed(), DungeonFormat.encode(snapshot)));
+        }
+        DungeonCache cache = new DungeonCache();
+        for (long seed = 700; seed < 700 + count; seed++) {
+            byte[] cached = cache.getEncoded(parameters, seed);
+            assertArrayEquals(batch.get(DungeonReader.wrapValid(cached).getSeed()), cached, "seed " + seed);
+        }
+    }
+
+    @Test
+    void hitsReturnTheCachedDungeon() throws Exception {
+        DungeonCache cache = new DungeonCache();
+        byte[] first = cache.getEncoded(PARAMETERS, 4);
+        assertArrayEquals(generate(PARAMETERS, 4), first);
+        assertSame(first, cache.getEncoded(PARAMETERS, 4));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Parameters are part of the key
+        assertNull(cache.getIfPresent(new DungeonParameters(60, 30, 3, 2), 4));
+        assertArrayEquals(first, DungeonFormat.encode(cache.get(PARAMETERS, 4)));
+        assertEquals(DungeonCache.ENTRY_OVERHEAD + first.length, cache.getSizeBytes());
+    }
+
+    @Test
+    void leastRecentlyUsedDungeonsAreEvictedToFit() {
+        // Encodings differ in size, so the bound fits the three largest of the four
+        long[] sizes = new long[4];
+        for (int seed = 0; seed < sizes.length; seed++) {
+            sizes[seed] = DungeonCache.ENTRY_OVERHEAD + generate(PARAMETERS, seed).length;
+        }
+        long[] sorted = sizes.clone();
+        Arrays.sort(sorted);
+        DungeonCache cache = new DungeonCache(sorted[1] + sorted[2] + sorted[3]);
+        cache.getEncoded(PARAMETERS, 0);
+        cache.getEncoded(PARAMETERS, 1);
+        cache.getEncoded(PARAMETERS, 2);
+        // Touch 0, so 1 is now the least recently used
+        assertNotNull(cache.getIfPresent(PARAMETERS, 0));
+        cache.getEncoded(PARAMETERS, 3);
+
+        // 0, 2 and 3 fit together, as no three entries exceed the bound
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getSizeBytes() <= cache.getMaxBytes());
+        assertNull(cache.getIfPresent(PARAMETERS, 1));
+        assertNotNull(cache.getIfPresent(PARAMETERS, 0));
+        assertNotNull(cache.getIfPresent(PARAMETERS, 3));
+
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    void dungeonsLargerThanTheCacheAreNotKept() {
+        DungeonCache cache = new DungeonCache(100);
+        byte[] encoded = cache.getEncoded(PARAMETERS, 9);
+        assertArrayEquals(generate(PARAMETERS, 9), encoded);
+        assertEquals(0, cache.getEntryCount());
+        assertThrows(IllegalArgumentException.class, () -> new DungeonCache(0));
+    }
+
+    @Test
+    void corruptEncodingsAreNotCached() {
+        DungeonCache cache = new DungeonCache();
+        byte[] corrupt = generate(PARAMETERS, 2);
+        // The last row's single run of walls, one tile short
+        corrupt[corrupt.length - 1] = 59;
+        assertThrows(IllegalArgumentException.class, () -> cache.put(PARAMETERS, 2, corrupt));
+        assertEquals(0, cache.getEntryCount());
+
+        byte[] valid = generate(PARAMETERS, 2);
+        cache.put(PARAMETERS, 2, valid);
+        assertSame(valid, cache.getEncoded(PARAMETERS, 2));
+    }
+
+    @Test
+    void concurrentLookupsStayWithinTheBound() throws Exception {
+        int entry = DungeonCache.ENTRY_OVERHEAD + generate(PARAMETERS, 0).length;
+        DungeonCache cache = new DungeonCache(10L * entry);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[8];
+            for (int t = 0; t < results.length; t++) {
+                long offset = t;
+                results[t] = pool.submit(() -> {
+                    for (long i = 0; i < 200; i++) {
+                        long seed = (i * 7 + offset) % 25;
+                        assertArrayEquals(generate(PARAMETERS, seed), cache.getEncoded(PARAMETERS, seed));
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(cache.getSizeBytes() <= cache.getMaxBytes());
+        assertEquals(1600, cache.getHitCount() + cache.getMissCount());
+    }
+}
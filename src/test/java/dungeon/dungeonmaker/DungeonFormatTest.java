@@ -0,0 +1,236 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DungeonFormatTest {
+
+    private static DungeonSnapshot generate(int width, int height, int sectionsX, int sectionsY, long seed) {
+        GridDungeon dungeon = new GridDungeon(width, height, sectionsX, sectionsY, seed);
+        dungeon.generate();
+        return dungeon.snapshot();
+    }
+
+    private static void assertSameDungeon(DungeonSnapshot expected, DungeonSnapshot actual) {
+        assertEquals(expected.getSeed(), actual.getSeed());
+        assertEquals(expected.getSectionsX(), actual.getSectionsX());
+        assertEquals(expected.getSectionsY(), actual.getSectionsY());
+        assertEquals(expected.getStartingRoomIndex(), actual.getStartingRoomIndex());
+        assertEquals(expected.getRoomCount(), actual.getRoomCount());
+        for (int i = 0; i < expected.getRoomCount(); i++) {
+            DungeonRoom a = expected.getRoom(i);
+            DungeonRoom b = actual.getRoom(i);
+            assertEquals(a.containsRoom(), b.containsRoom());
+            assertEquals(a.getIndexX(), b.getIndexX());
+            assertEquals(a.getIndexY(), b.getIndexY());
+            assertEquals(a.getCenterX(), b.getCenterX());
+            assertEquals(a.getCenterY(), b.getCenterY());
+            assertEquals(a.getOriginX(), b.getOriginX());
+            assertEquals(a.getOriginY(), b.getOriginY());
+            assertEquals(a.getWidth(), b.getWidth());
+            assertEquals(a.getHeight(), b.getHeight());
+        }
+        assertSameTiles(expected, actual);
+    }
+
+    private static void assertSameTiles(TileGrid expected, TileGrid actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getType(x, y), actual.getType(x, y), "tile " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsThroughBytes() throws IOException {
+        int[][] layouts = { { 60, 30, 4, 2 }, { 97, 41, 7, 3 }, { 300, 200, 20, 10 }, { 12, 9, 1, 1 } };
+        for (int[] layout : layouts) {
+            for (long seed = 0; seed < 5; seed++) {
+                DungeonSnapshot dungeon = generate(layout[0], layout[1], layout[2], layout[3], seed);
+                DungeonReader reader = DungeonReader.wrap(DungeonFormat.encode(dungeon));
+                assertSameTiles(dungeon, reader);
+                assertSameDungeon(dungeon, reader.toSnapshot());
+                assertArrayEquals(DungeonFormat.encode(dungeon), DungeonFormat.encode(reader.toSnapshot()));
+            }
+        }
+    }
+
+    @Test
+    void roundTripsThroughAMappedFile(@TempDir Path dir) throws IOException {
+        DungeonSnapshot dungeon = generate(200, 100, 10, 5, 9L);
+        Path file = dir.resolve("dungeon.dgn");
+        DungeonFormat.write(dungeon, file);
+        DungeonReader reader = DungeonReader.map(file);
+        assertEquals(dungeon.getSeed(), reader.getSeed());
+        assertSameDungeon(dungeon, reader.toSnapshot());
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        byte[] bytes = DungeonFormat.encode(generate(60, 30, 4, 2, 1L));
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> DungeonReader.wrap(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsCorruptHeaders() {
+        byte[] bytes = DungeonFormat.encode(generate(60, 30, 4, 2, 1L));
+        assertCorrupt(bytes, buffer -> buffer.putInt(0, 0));
+        assertCorrupt(bytes, buffer -> buffer.putShort(4, (short) 99));
+        assertCorrupt(bytes, buffer -> buffer.putInt(8, 0));
+        assertCorrupt(bytes, buffer -> buffer.putInt(12, -1));
+        assertCorrupt(bytes, buffer -> buffer.putInt(24, 0));
+        assertCorrupt(bytes, buffer -> buffer.putInt(28, -8));
+        assertCorrupt(bytes, buffer -> buffer.putInt(32, 8));
+        // 8 * 2^29 overflows an int when multiplied by the room size
+        assertCorrupt(bytes, buffer -> buffer.putInt(28, 1 << 29).putInt(36, 4 << 29));
+    }
+
+    @Test
+    void rejectsCorruptRoomsAndRuns() throws IOException {
+        DungeonSnapshot dungeon = generate(60, 30, 4, 2, 1L);
+        byte[] bytes = DungeonFormat.encode(dungeon);
+        int rooms = DungeonFormat.HEADER_SIZE;
+        int tiles = rooms + dungeon.getRoomCount() * DungeonFormat.ROOM_SIZE + (dungeon.getHeight() + 1) * 4;
+
+        assertCorrupt(bytes, buffer -> buffer.put(rooms, (byte) 7));
+        assertCorrupt(bytes, buffer -> buffer.putInt(rooms + 1, 60));
+        assertCorrupt(bytes, buffer -> buffer.putInt(rooms + 9, 59).putInt(rooms + 17, 2));
+        // The first row is a single run of 60 walls: type, then one varint byte
+        assertEquals(TileType.WALL.ordinal(), bytes[tiles]);
+        assertEquals(60, bytes[tiles + 1]);
+        assertCorruptRow(bytes, 0, buffer -> buffer.put(tiles, (byte) 3));
+        assertCorruptRow(bytes, 0, buffer -> buffer.put(tiles, (byte) -1));
+        assertCorruptRow(bytes, 0, buffer -> buffer.put(tiles + 1, (byte) 61));
+        assertCorruptRow(bytes, 0, buffer -> buffer.put(tiles + 1, (byte) 59));
+        assertCorruptRow(bytes, 0, buffer -> buffer.put(tiles + 1, (byte) 0));
+        assertCorruptRow(bytes, 0, buffer -> buffer.put(tiles + 1, (byte) 0x80));
+        // Row offsets out of order, too close together or past the tile data
+        int offsets = tiles - (dungeon.getHeight() + 1) * 4;
+        assertCorrupt(bytes, buffer -> buffer.putInt(offsets, 1));
+        assertCorrupt(bytes, buffer -> buffer.putInt(offsets + 4, Integer.MAX_VALUE));
+        assertCorrupt(bytes, buffer -> buffer.putInt(offsets + 8, 0));
+        assertCorrupt(bytes, buffer -> buffer.putInt(offsets + 4, 1));
+    }
+
+    @Test
+    void rowsAreOnlyCheckedWhenRead() throws IOException {
+        DungeonSnapshot dungeon = generate(60, 30, 4, 2, 1L);
+        byte[] bytes = DungeonFormat.encode(dungeon);
+        // The last row, like the first, is a single run of walls
+        int last = bytes.length - 2;
+        assertEquals(60, bytes[last + 1]);
+        bytes[last + 1] = 59;
+
+        DungeonReader reader = DungeonReader.wrap(bytes);
+        for (int y = 0; y < 29; y++) {
+            for (int x = 0; x < 60; x++) {
+                assertEquals(dungeon.getType(x, y), reader.getType(x, y));
+            }
+        }
+        UncheckedIOException thrown = assertThrows(UncheckedIOException.class, () -> reader.getType(0, 29));
+        assertTrue(thrown.getCause().getMessage().contains("row 29"), thrown.getCause().getMessage());
+        assertThrows(IOException.class, reader::checkRows);
+        assertThrows(IOException.class, reader::toSnapshot);
+        // Still fails on every later read, not just the first
+        assertThrows(UncheckedIOException.class, () -> reader.getType(5, 29));
+    }
+
+    @Test
+    void validEncodingsNeedNoRowChecks() throws IOException {
+        DungeonSnapshot dungeon = generate(97, 41, 7, 3, 3L);
+        byte[] bytes = DungeonFormat.encode(dungeon);
+        DungeonReader checked = DungeonReader.wrap(bytes);
+        checked.checkRows();
+        assertSameDungeon(dungeon, checked.toSnapshot());
+        assertSameDungeon(dungeon, DungeonReader.wrapValid(bytes).toSnapshot());
+        assertSameTiles(dungeon, DungeonReader.wrapValid(bytes));
+    }
+
+    @Test
+    void randomCorruptionFailsWithAnIOExceptionOrNotAtAll() {
+        byte[] bytes = DungeonFormat.encode(generate(60, 30, 4, 2, 1L));
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < 5000; i++) {
+            byte[] corrupt = bytes.clone();
+            for (int flips = random.nextInt(1, 4); flips > 0; flips--) {
+                corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            }
+            DungeonReader reader;
+            DungeonSnapshot snapshot;
+            try {
+                reader = DungeonReader.wrap(corrupt);
+                snapshot = reader.toSnapshot();
+            } catch (IOException e) {
+                continue;
+            }
+            // Anything that decodes reads back tile for tile
+            assertSameTiles(snapshot, reader);
+        }
+    }
+
+    @Test
+    void randomCorruptionNeverFailsALookupWithAnythingElse() {
+        byte[] bytes = DungeonFormat.encode(generate(60, 30, 4, 2, 1L));
+        SplittableRandom random = new SplittableRandom(6);
+        for (int i = 0; i < 2000; i++) {
+            byte[] corrupt = bytes.clone();
+            for (int flips = random.nextInt(1, 4); flips > 0; flips--) {
+                corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt(256);
+            }
+            DungeonReader reader;
+            try {
+                reader = DungeonReader.wrap(corrupt);
+            } catch (IOException e) {
+                continue;
+            }
+            for (int y = 0; y < reader.getHeight(); y++) {
+                for (int x = 0; x < reader.getWidth(); x += 7) {
+                    try {
+                        reader.getType(x, y);
+                    } catch (UncheckedIOException e) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private interface Corruption {
+        void apply(ByteBuffer buffer);
+    }
+
+    private static void assertCorrupt(byte[] bytes, Corruption corruption) {
+        byte[] corrupt = bytes.clone();
+        corruption.apply(ByteBuffer.wrap(corrupt));
+        assertThrows(IOException.class, () -> DungeonReader.wrap(corrupt));
+    }
+
+    /**
+     * The file opens, but the row fails once read.
+     */
+    private static void assertCorruptRow(byte[] bytes, int row, Corruption corruption) throws IOException {
+        byte[] corrupt = bytes.clone();
+        corruption.apply(ByteBuffer.wrap(corrupt));
+        DungeonReader reader = DungeonReader.wrap(corrupt);
+        assertThrows(UncheckedIOException.class, () -> reader.getType(0, row));
+        assertThrows(IOException.class, reader::checkRows);
+        assertThrows(IOException.class, reader::toSnapshot);
+    }
+}
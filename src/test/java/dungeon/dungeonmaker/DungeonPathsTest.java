@@ -0,0 +1,190 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DungeonPathsTest {
+
+    private static DungeonSnapshot dungeon(int width, int height, int sectionsX, int sectionsY, long seed) {
+        GridDungeon dungeon = new GridDungeon(width, height, sectionsX, sectionsY, seed);
+        dungeon.generate();
+        return dungeon.snapshot();
+    }
+
+    /**
+     * Plain breadth-first search over the whole map.
+     */
+    private static int[] bfs(TileGrid grid, int fromX, int fromY) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int[] distance = new int[width * height];
+        Arrays.fill(distance, DungeonPaths.UNREACHABLE);
+        if (grid.getType(fromX, fromY) == TileType.WALL) {
+            return distance;
+        }
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+        distance[fromY * width + fromX] = 0;
+        queue[tail++] = fromY * width + fromX;
+        int[][] steps = { { 0, -1 }, { 1, 0 }, { 0, 1 }, { -1, 0 } };
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int[] step : steps) {
+                int x = cell % width + step[0];
+                int y = cell / width + step[1];
+                if (x >= 0 && y >= 0 && x < width && y < height
+                        && distance[y * width + x] == DungeonPaths.UNREACHABLE
+                        && grid.getType(x, y) != TileType.WALL) {
+                    distance[y * width + x] = distance[cell] + 1;
+                    queue[tail++] = y * width + x;
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static int[] randomOpenTile(TileGrid grid, SplittableRandom random) {
+        while (true) {
+            int x = random.nextInt(grid.getWidth());
+            int y = random.nextInt(grid.getHeight());
+            if (grid.getType(x, y) != TileType.WALL) {
+                return new int[] { x, y };
+            }
+        }
+    }
+
+    @Test
+    void distanceIsAnUpperBoundMatchingThePath() {
+        SplittableRandom random = new SplittableRandom(22);
+        long exactSum = 0;
+        long foundSum = 0;
+        for (long seed = 0; seed < 10; seed++) {
+            DungeonSnapshot dungeon = dungeon(160, 80, 8, 4, seed);
+            DungeonPaths paths = new DungeonPaths(dungeon);
+            int width = dungeon.getWidth();
+            for (int query = 0; query < 40; query++) {
+                int[] from = randomOpenTile(dungeon, random);
+                int[] to = randomOpenTile(dungeon, random);
+                int exact = bfs(dungeon, from[0], from[1])[to[1] * width + to[0]];
+                int distance = paths.distance(from[0], from[1], to[0], to[1]);
+                int[] path = paths.path(from[0], from[1], to[0], to[1]);
+                if (exact == DungeonPaths.UNREACHABLE) {
+                    assertEquals(DungeonPaths.UNREACHABLE, distance);
+                    assertEquals(0, path.length);
+                    continue;
+                }
+                assertTrue(distance >= exact, "seed " + seed + ": " + distance + " < " + exact);
+                exactSum += exact;
+                foundSum += distance;
+
+                // The path walks the distance over open tiles, one step at a time
+                assertEquals(distance + 1, path.length);
+                assertEquals(from[1] * width + from[0], path[0]);
+                assertEquals(to[1] * width + to[0], path[path.length - 1]);
+                for (int i = 0; i < path.length; i++) {
+                    assertTrue(dungeon.getType(path[i] % width, path[i] / width) != TileType.WALL);
+                    if (i > 0) {
+                        int dx = Math.abs(path[i] % width - path[i - 1] % width);
+                        int dy = Math.abs(path[i] / width - path[i - 1] / width);
+                        assertEquals(1, dx + dy, "seed " + seed + ", step " + i);
+                    }
+                }
+            }
+        }
+        assertTrue(foundSum <= exactSum * 3 / 2, foundSum + " steps against " + exactSum + " shortest");
+    }
+
+    @Test
+    void distanceWithinOneOpenSectionIsExact() {
+        TileMap map = new TileMap(40, 20);
+        map.fillRect(1, 1, 18, 18, TileType.FLOOR);
+        DungeonRoom[] rooms = { new DungeonRoom(), new DungeonRoom() };
+        DungeonSnapshot dungeon = new DungeonSnapshot(1, 2, 1, map, rooms, 0);
+        DungeonPaths paths = new DungeonPaths(dungeon);
+        assertEquals(34, paths.distance(1, 1, 18, 18));
+        assertEquals(0, paths.distance(5, 5, 5, 5));
+        assertEquals(DungeonPaths.UNREACHABLE, paths.distance(1, 1, 0, 0));
+        assertEquals(DungeonPaths.UNREACHABLE, paths.distance(1, 1, 25, 5));
+        assertThrows(IllegalArgumentException.class, () -> paths.distance(-1, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> paths.path(1, 1, 40, 0));
+    }
+
+    @Test
+    void roomFieldsAreExact() {
+        DungeonSnapshot dungeon = dungeon(120, 60, 6, 3, 5);
+        DungeonPaths paths = new DungeonPaths(dungeon, 2);
+        for (int r = 0; r < dungeon.getRoomCount(); r++) {
+            DungeonRoom room = dungeon.getRoom(r);
+            int[] expected = bfs(dungeon, room.getCenterX(), room.getCenterY());
+            for (int y = 0; y < dungeon.getHeight(); y++) {
+                for (int x = 0; x < dungeon.getWidth(); x++) {
+                    int distance = expected[y * dungeon.getWidth() + x];
+                    assertEquals(distance, paths.distanceFromRoom(r, x, y));
+                    int step = paths.stepTowardRoom(r, x, y);
+                    if (distance > 0) {
+                        assertEquals(distance - 1, expected[step]);
+                    } else {
+                        assertEquals(DungeonPaths.UNREACHABLE, step);
+                    }
+                }
+            }
+        }
+        DungeonRoom start = dungeon.getRoom(dungeon.getStartingRoomIndex());
+        assertEquals(0, paths.distanceFromStart(start.getCenterX(), start.getCenterY()));
+        assertThrows(IllegalArgumentException.class, () -> paths.distanceFromRoom(dungeon.getRoomCount(), 0, 0));
+    }
+
+    @Test
+    void defaultFieldCacheShrinksWithTheMap() {
+        assertEquals(DungeonPaths.DEFAULT_CACHED_FIELDS, DungeonPaths.defaultCachedFields(60, 30));
+        assertEquals(4, DungeonPaths.defaultCachedFields(2048, 2048));
+        assertEquals(1, DungeonPaths.defaultCachedFields(8192, 8192));
+    }
+
+    @Test
+    void concurrentQueriesAgreeWithSequentialOnes() throws Exception {
+        DungeonSnapshot dungeon = dungeon(200, 100, 10, 5, 9);
+        DungeonPaths paths = new DungeonPaths(dungeon);
+        SplittableRandom random = new SplittableRandom(3);
+        int[][] queries = new int[400][];
+        int[] expected = new int[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            int[] from = randomOpenTile(dungeon, random);
+            int[] to = randomOpenTile(dungeon, random);
+            queries[i] = new int[] { from[0], from[1], to[0], to[1] };
+            expected[i] = paths.distance(from[0], from[1], to[0], to[1]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[8];
+            for (int t = 0; t < results.length; t++) {
+                results[t] = pool.submit(() -> {
+                    int[] found = new int[queries.length];
+                    for (int i = 0; i < queries.length; i++) {
+                        int[] q = queries[i];
+                        found[i] = paths.distance(q[0], q[1], q[2], q[3]);
+                    }
+                    assertArrayEquals(expected, found);
+                    return null;
+                });
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DungeonPipelineTest {
+
+    private static final DungeonParameters PARAMETERS = new DungeonParameters(60, 30);
+
+    @Test
+    void batchMatchesGeneratingOneAtATime() {
+        int count = 300;
+        long firstSeed = 1000;
+        List<DungeonState> batch = new ArrayList<>();
+        DungeonPipeline pipeline = DungeonPipeline.standard();
+        pipeline.run(PARAMETERS, firstSeed, count, batch::add);
+
+        assertEquals(count, batch.size());
+        for (int i = 0; i < count; i++) {
+            GridDungeon dungeon = PARAMETERS.newDungeon(firstSeed + i);
+            dungeon.generate();
+            DungeonSnapshot batched = batch.get(i).getDungeon().snapshot();
+            // Handed over in seed order
+            assertEquals(firstSeed + i, batched.getSeed());
+            assertArrayEquals(DungeonFormat.encode(dungeon.snapshot()), DungeonFormat.encode(batched));
+        }
+        for (int stage = 0; stage < pipeline.getStageCount(); stage++) {
+            assertEquals(count, pipeline.getStageLatency(stage).getCount());
+        }
+    }
+
+    @Test
+    void singleRunMatchesGenerate() {
+        GridDungeon expected = PARAMETERS.newDungeon(77);
+        expected.generate();
+        DungeonState state = DungeonPipeline.standard()
+                .addStage("Validating", DungeonStage.validate())
+                .run(new DungeonState(PARAMETERS.newDungeon(77)));
+        assertArrayEquals(DungeonFormat.encode(expected.snapshot()),
+                DungeonFormat.encode(state.getDungeon().snapshot()));
+        assertEquals(expected.validate().isConnected(), state.getReachability().isConnected());
+    }
+
+    @Test
+    void stageFailureStopsTheBatch() {
+        IllegalStateException failure = new IllegalStateException("stage broke");
+        DungeonPipeline pipeline = DungeonPipeline.standard()
+                .addStage("Failing", state -> {
+                    if (state.getDungeon().getSeed() == 5) {
+                        throw failure;
+                    }
+                    return state;
+                });
+        List<DungeonState> seen = new ArrayList<>();
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(PARAMETERS, 0, 1000, seen::add));
+        assertSame(failure, thrown);
+        assertTrue(seen.size() <= 5, seen.size() + " dungeons passed the failing seed");
+        // The interrupt that woke the caller is not left behind
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void consumerFailureStopsTheBatch() {
+        DungeonPipeline pipeline = DungeonPipeline.standard();
+        int[] seen = new int[1];
+        assertThrows(UnsupportedOperationException.class, () -> pipeline.run(PARAMETERS, 0, 1000, state -> {
+            if (++seen[0] == 3) {
+                throw new UnsupportedOperationException("consumer broke");
+            }
+        }));
+        assertEquals(3, seen[0]);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void badArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new DungeonPipeline(0));
+        assertThrows(IllegalArgumentException.class, () -> new DungeonPipeline().addStage("Nothing", null));
+        assertThrows(IllegalArgumentException.class,
+                () -> DungeonPipeline.standard().run(PARAMETERS, 0, -1, state -> { }));
+    }
+}
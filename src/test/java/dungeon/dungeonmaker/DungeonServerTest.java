@@ -0,0 +1,114 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DungeonServerTest {
+
+    private DungeonServer server;
+
+    private DungeonServer start(int maxTilesInFlight) throws IOException {
+        server = new DungeonServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), maxTilesInFlight);
+        server.start();
+        return server;
+    }
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private HttpURLConnection get(String query) throws IOException {
+        URI uri = URI.create("http://127.0.0.1:" + server.getPort() + DungeonServer.PATH + "?" + query);
+        return (HttpURLConnection) uri.toURL().openConnection();
+    }
+
+    private static byte[] body(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getResponseCode() < 400
+                ? connection.getInputStream() : connection.getErrorStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void servesTheDungeonOfTheSeed() throws IOException {
+        start(DungeonServer.DEFAULT_MAX_TILES_IN_FLIGHT);
+        HttpURLConnection connection = get("seed=42&width=90&height=40&sectionsX=6&sectionsY=4");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("42", connection.getHeaderField("X-Dungeon-Seed"));
+
+        GridDungeon expected = new GridDungeon(90, 40, 6, 4, 42L);
+        expected.generateConnected(BatchGenerator.DEFAULT_MAX_RETRIES);
+        assertArrayEquals(DungeonFormat.encode(expected.snapshot()), body(connection));
+
+        // The second time comes from the cache
+        assertEquals(200, get("seed=42&width=90&height=40&sectionsX=6&sectionsY=4").getResponseCode());
+        assertEquals(1, server.getCache().getHitCount());
+    }
+
+    @Test
+    void servesWhatTheBatchGenerates() throws IOException {
+        start(DungeonServer.DEFAULT_MAX_TILES_IN_FLIGHT);
+        DungeonParameters parameters = new DungeonParameters(120, 60, 8, 4);
+        int count = 40;
+        // Keyed by the seed each dungeon ended up with, as retries derive a new one
+        Map<Long, byte[]> batch = new ConcurrentHashMap<>();
+        try (BatchGenerator generator = new BatchGenerator(1)) {
+            generator.generate(parameters, 500, count, snapshot ->
+                    batch.put(snapshot.getSeed(), DungeonFormat.encode(snapshot)));
+        }
+        for (long seed = 500; seed < 500 + count; seed++) {
+            HttpURLConnection connection = get("seed=" + seed + "&width=120&height=60&sectionsX=8&sectionsY=4");
+            assertEquals(200, connection.getResponseCode());
+            byte[] served = body(connection);
+            assertArrayEquals(batch.get(DungeonReader.wrap(served).getSeed()), served, "seed " + seed);
+        }
+    }
+
+    @Test
+    void servesJson() throws IOException {
+        start(DungeonServer.DEFAULT_MAX_TILES_IN_FLIGHT);
+        HttpURLConnection connection = get("seed=7&format=json");
+        assertEquals(200, connection.getResponseCode());
+        String json = new String(body(connection), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"seed\":7,\"width\":60,\"height\":30"), json);
+    }
+
+    @Test
+    void rejectsBadRequests() throws IOException {
+        start(DungeonServer.DEFAULT_MAX_TILES_IN_FLIGHT);
+        assertEquals(400, get("width=abc").getResponseCode());
+        assertEquals(400, get("format=xml").getResponseCode());
+        assertEquals(400, get("width=4096&height=4096").getResponseCode());
+    }
+
+    @Test
+    void dungeonsLargerThanTheTileLimitAreRejectedNotRetried() throws IOException {
+        start(1000);
+        assertEquals(400, get("width=60&height=30").getResponseCode());
+        assertEquals(200, get("width=30&height=30").getResponseCode());
+    }
+
+    @Test
+    void creatingAServerLeavesSystemPropertiesAlone() throws IOException {
+        String before = System.getProperty("sun.net.httpserver.nodelay");
+        start(DungeonServer.DEFAULT_MAX_TILES_IN_FLIGHT);
+        assertEquals(before, System.getProperty("sun.net.httpserver.nodelay"));
+    }
+}
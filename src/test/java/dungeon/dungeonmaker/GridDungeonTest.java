@@ -0,0 +1,250 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridDungeonTest {
+
+    private static byte[] generate(int width, int height, int sectionsX, int sectionsY, long seed) {
+        GridDungeon dungeon = new GridDungeon(width, height, sectionsX, sectionsY, seed);
+        dungeon.generate();
+        return DungeonFormat.encode(dungeon.snapshot());
+    }
+
+    /**
+     * @return every tile whose type differs between the two grids, as y * width + x
+     */
+    private static Set<Integer> diff(TileGrid before, TileGrid after) {
+        Set<Integer> changed = new HashSet<>();
+        for (int y = 0; y < before.getHeight(); y++) {
+            for (int x = 0; x < before.getWidth(); x++) {
+                if (before.getType(x, y) != after.getType(x, y)) {
+                    changed.add(y * before.getWidth() + x);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static Set<Integer> asSet(TileChanges changes, int width) {
+        Set<Integer> tiles = new HashSet<>();
+        for (int i = 0; i < changes.size(); i++) {
+            tiles.add(changes.getY(i) * width + changes.getX(i));
+        }
+        return tiles;
+    }
+
+    @Test
+    void dungeonsOnlyDependOnTheSeed() {
+        for (long seed = 0; seed < 50; seed++) {
+            assertArrayEquals(generate(60, 30, 4, 2, seed), generate(60, 30, 4, 2, seed));
+        }
+        assertFalse(Arrays.equals(generate(60, 30, 4, 2, 1), generate(60, 30, 4, 2, 2)));
+
+        // Regenerating into the same object gives the same dungeon as a fresh one
+        GridDungeon reused = new GridDungeon(120, 60, 8, 4, 0);
+        for (long seed = 0; seed < 20; seed++) {
+            reused.setSeed(seed);
+            reused.generate();
+            assertArrayEquals(generate(120, 60, 8, 4, seed), DungeonFormat.encode(reused.snapshot()));
+        }
+    }
+
+    @Test
+    void roomsStayInsideTheirSections() {
+        int[][] layouts = { { 60, 30, 4, 2 }, { 61, 33, 5, 3 }, { 200, 40, 20, 2 }, { 90, 90, 1, 1 } };
+        for (int[] layout : layouts) {
+            GridDungeon dungeon = new GridDungeon(layout[0], layout[1], layout[2], layout[3], 7);
+            dungeon.generate();
+            DungeonSnapshot snapshot = dungeon.snapshot();
+            assertEquals(layout[2] * layout[3], snapshot.getRoomCount());
+            int sectionWidth = layout[0] / layout[2];
+            int sectionHeight = layout[1] / layout[3];
+            for (int i = 0; i < snapshot.getRoomCount(); i++) {
+                DungeonRoom room = snapshot.getRoom(i);
+                assertEquals(i, room.getIndexY() * layout[2] + room.getIndexX());
+                assertEquals(i, dungeon.getSectionAt(room.getCenterX(), room.getCenterY()));
+                assertEquals(TileType.CENTER, snapshot.getType(room.getCenterX(), room.getCenterY()));
+                if (room.containsRoom()) {
+                    // A wall is left on every side of the room inside its section
+                    assertTrue(room.getOriginX() > room.getIndexX() * sectionWidth);
+                    assertTrue(room.getOriginY() > room.getIndexY() * sectionHeight);
+                    assertTrue(room.getOriginX() + room.getWidth() < (room.getIndexX() + 1) * sectionWidth);
+                    assertTrue(room.getOriginY() + room.getHeight() < (room.getIndexY() + 1) * sectionHeight);
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new GridDungeon(60, 30, 0, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> new GridDungeon(60, 30, 30, 2, 1));
+    }
+
+    @Test
+    void generatedDungeonsAreConnected() {
+        for (long seed = 0; seed < 200; seed++) {
+            GridDungeon dungeon = new GridDungeon(120, 60, 8, 4, seed);
+            Reachability reachability = dungeon.generateConnected(BatchGenerator.DEFAULT_MAX_RETRIES);
+            assertTrue(reachability.isConnected(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void retrySeedsAreNotRoomStreams() {
+        for (long seed = 0; seed < 100; seed++) {
+            Set<Long> roomStreams = new HashSet<>();
+            for (int section = 0; section < 1024; section++) {
+                roomStreams.add(Seeds.derive(seed, section));
+            }
+            for (int retry = 0; retry < 16; retry++) {
+                long retrySeed = GridDungeon.retrySeed(seed, retry);
+                assertFalse(roomStreams.contains(retrySeed), "seed " + seed + " retry " + retry);
+                // Nor are the retry's own rooms drawn from a room stream of the first attempt
+                for (int section = 0; section < 64; section++) {
+                    assertFalse(roomStreams.contains(Seeds.derive(retrySeed, section)),
+                            "seed " + seed + " retry " + retry + " section " + section);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cancelledCorridorsLeaveTheOriginalUntouched() {
+        for (boolean parallel : new boolean[] { false, true }) {
+            GridDungeon dungeon = new GridDungeon(120, 60, 8, 4, 21);
+            dungeon.setParallel(parallel);
+            dungeon.initMap();
+            dungeon.createRooms();
+            byte[] rooms = DungeonFormat.encode(dungeon.snapshot());
+
+            // Routing checks for interrupts between corridors
+            GridDungeon cancelled = new GridDungeon(dungeon);
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(CancellationException.class, cancelled::connectRooms);
+            } finally {
+                Thread.interrupted();
+            }
+            assertArrayEquals(rooms, DungeonFormat.encode(dungeon.snapshot()));
+
+            // A copy routes the same corridors as the original would have
+            GridDungeon copy = new GridDungeon(dungeon);
+            copy.connectRooms();
+            dungeon.connectRooms();
+            assertArrayEquals(DungeonFormat.encode(dungeon.snapshot()), DungeonFormat.encode(copy.snapshot()));
+            assertArrayEquals(generate(120, 60, 8, 4, 21), DungeonFormat.encode(copy.snapshot()));
+        }
+    }
+
+    @Test
+    void regeneratingARoomReportsExactlyWhatChanged() {
+        for (long seed = 0; seed < 40; seed++) {
+            GridDungeon dungeon = new GridDungeon(120, 60, 8, 4, seed);
+            dungeon.generate();
+            for (int section = 0; section < 32; section += 5) {
+                if (!dungeon.getDungeonRooms()[section].containsRoom()) {
+                    continue;
+                }
+                DungeonSnapshot before = dungeon.snapshot();
+                TileChanges changes = dungeon.regenerateRoom(section);
+                assertEquals(diff(before, dungeon.snapshot()), asSet(changes, 120), "seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void byDefaultOnlyTheBlockAroundTheRoomChanges() {
+        // A large map with the router left at its defaults
+        int sectionsX = 20;
+        int sectionsY = 10;
+        int sectionSize = 20;
+        GridDungeon dungeon = new GridDungeon(sectionsX * sectionSize, sectionsY * sectionSize,
+                sectionsX, sectionsY, 11);
+        dungeon.generate();
+        int regenerated = 0;
+        for (int section = 0; section < sectionsX * sectionsY; section += 7) {
+            DungeonRoom room = dungeon.getDungeonRooms()[section];
+            if (!room.containsRoom()) {
+                continue;
+            }
+            DungeonSnapshot before = dungeon.snapshot();
+            TileChanges changes = dungeon.regenerateRoom(section);
+            assertEquals(diff(before, dungeon.snapshot()), asSet(changes, sectionsX * sectionSize));
+            // At most the 3x3 block of sections is touched, not the map
+            assertTrue(changes.size() <= 9 * sectionSize * sectionSize, changes.size() + " tiles changed");
+            for (int i = 0; i < changes.size(); i++) {
+                assertTrue(Math.abs(changes.getX(i) / sectionSize - room.getIndexX()) <= 1
+                        && Math.abs(changes.getY(i) / sectionSize - room.getIndexY()) <= 1,
+                        "section " + section + ": tile " + changes.getX(i) + ", " + changes.getY(i)
+                                + " changed outside the block");
+            }
+            regenerated++;
+        }
+        assertTrue(regenerated > 10);
+        assertTrue(dungeon.validate().isConnected());
+    }
+
+    @Test
+    void withDearerWallsChangesStayWithinTwoSections() {
+        for (long seed = 0; seed < 40; seed++) {
+            GridDungeon dungeon = new GridDungeon(120, 60, 8, 4, seed);
+            dungeon.setCorridorCosts(3, 1);
+            dungeon.generate();
+            for (int section = 0; section < 32; section += 3) {
+                DungeonRoom room = dungeon.getDungeonRooms()[section];
+                if (!room.containsRoom()) {
+                    continue;
+                }
+                DungeonSnapshot before = dungeon.snapshot();
+                boolean connected = dungeon.validate().isConnected();
+                TileChanges changes = dungeon.regenerateRoom(section);
+                assertEquals(diff(before, dungeon.snapshot()), asSet(changes, 120), "seed " + seed);
+                // Every corridor is carved again or left whole
+                assertEquals(connected, dungeon.validate().isConnected(), "seed " + seed + ", section " + section);
+                for (int i = 0; i < changes.size(); i++) {
+                    int sectionX = changes.getX(i) / 15;
+                    int sectionY = changes.getY(i) / 15;
+                    assertTrue(Math.abs(sectionX - room.getIndexX()) <= 2
+                            && Math.abs(sectionY - room.getIndexY()) <= 2,
+                            "seed " + seed + ", section " + section + ": tile " + changes.getX(i)
+                                    + ", " + changes.getY(i) + " changed outside the ring");
+                }
+            }
+        }
+    }
+
+    @Test
+    void withUniformCostsOnlyTheBlockAroundTheRoomChanges() {
+        int sectionsX = 8;
+        int sectionWidth = 120 / sectionsX;
+        int sectionHeight = 60 / 4;
+        for (long seed = 0; seed < 40; seed++) {
+            GridDungeon dungeon = new GridDungeon(120, 60, sectionsX, 4, seed);
+            dungeon.setCorridorCosts(1, 1);
+            dungeon.generate();
+            for (int section = 0; section < 32; section += 3) {
+                DungeonRoom room = dungeon.getDungeonRooms()[section];
+                if (!room.containsRoom()) {
+                    continue;
+                }
+                TileChanges changes = dungeon.regenerateRoom(section);
+                for (int i = 0; i < changes.size(); i++) {
+                    int sectionX = changes.getX(i) / sectionWidth;
+                    int sectionY = changes.getY(i) / sectionHeight;
+                    assertTrue(Math.abs(sectionX - room.getIndexX()) <= 1
+                            && Math.abs(sectionY - room.getIndexY()) <= 1,
+                            "seed " + seed + ", section " + section + ": tile " + changes.getX(i)
+                                    + ", " + changes.getY(i) + " changed outside the block");
+                }
+            }
+        }
+    }
+}
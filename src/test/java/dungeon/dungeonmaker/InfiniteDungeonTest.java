@@ -0,0 +1,79 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InfiniteDungeonTest {
+
+    @Test
+    void evictedChunksAreRegeneratedIdentically() {
+        InfiniteDungeon dungeon = new InfiniteDungeon(42L, 4, 12, 2);
+        byte[] first = DungeonFormat.encode(dungeon.getChunk(0, 0));
+        dungeon.getChunk(1, 0);
+        dungeon.getChunk(-1, 3);
+        assertEquals(2, dungeon.getCachedChunkCount());
+
+        assertArrayEquals(first, DungeonFormat.encode(dungeon.getChunk(0, 0)));
+        assertArrayEquals(first, DungeonFormat.encode(new InfiniteDungeon(42L, 4, 12, 2).getChunk(0, 0)));
+    }
+
+    @Test
+    void worldCoordinatesMapIntoChunks() {
+        InfiniteDungeon dungeon = new InfiniteDungeon(7L, 4, 12, 8);
+        int size = dungeon.getChunkSize();
+        DungeonSnapshot chunk = dungeon.getChunk(-1, -1);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                assertEquals(chunk.getType(x, y), dungeon.getType(x - size, y - size));
+            }
+        }
+    }
+
+    @Test
+    void neighbouringChunksMeetAtTheirBorder() {
+        InfiniteDungeon dungeon = new InfiniteDungeon(3L, 4, 12, 16);
+        int size = dungeon.getChunkSize();
+        for (int chunk = -2; chunk < 2; chunk++) {
+            long edge = (long) (chunk + 1) * size;
+            boolean vertical = false;
+            boolean horizontal = false;
+            for (int i = 0; i < size; i++) {
+                vertical |= dungeon.getType(edge - 1, i) != TileType.WALL
+                        && dungeon.getType(edge, i) != TileType.WALL;
+                horizontal |= dungeon.getType(i, edge - 1) != TileType.WALL
+                        && dungeon.getType(i, edge) != TileType.WALL;
+            }
+            assertTrue(vertical, "no doorway east of chunk " + chunk);
+            assertTrue(horizontal, "no doorway south of chunk " + chunk);
+        }
+    }
+
+    @Test
+    void concurrentLookupsAgree() throws Exception {
+        InfiniteDungeon shared = new InfiniteDungeon(11L, 4, 12, 4);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int chunk = i % 8;
+                results.add(pool.submit(() -> DungeonFormat.encode(shared.getChunk(chunk, -chunk))));
+            }
+            InfiniteDungeon reference = new InfiniteDungeon(11L, 4, 12, 4);
+            for (int i = 0; i < results.size(); i++) {
+                int chunk = i % 8;
+                assertArrayEquals(DungeonFormat.encode(reference.getChunk(chunk, -chunk)), results.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
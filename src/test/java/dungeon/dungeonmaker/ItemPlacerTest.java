@@ -0,0 +1,131 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemPlacerTest {
+
+    private static DungeonSnapshot dungeon(int width, int height, int sectionsX, int sectionsY, long seed) {
+        GridDungeon dungeon = new GridDungeon(width, height, sectionsX, sectionsY, seed);
+        dungeon.generate();
+        return dungeon.snapshot();
+    }
+
+    private static int[] sorted(int[] items) {
+        int[] copy = items.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void itemsKeepEveryRule() {
+        ItemPlacer placer = new ItemPlacer();
+        placer.setMinDistance(2.5);
+        placer.setMinStartDistance(10);
+        placer.setDensity(room -> 0.2);
+        for (long seed = 0; seed < 30; seed++) {
+            DungeonSnapshot dungeon = dungeon(120, 60, 8, 4, seed);
+            ItemLayout items = placer.place(dungeon);
+            assertTrue(items.size() > 0, "seed " + seed);
+
+            DungeonRoom start = dungeon.getRoom(dungeon.getStartingRoomIndex());
+            for (int i = 0; i < items.size(); i++) {
+                int x = items.getX(i);
+                int y = items.getY(i);
+                assertEquals(TileType.FLOOR, dungeon.getType(x, y));
+                DungeonRoom room = dungeon.getRoom(items.getRoom(i));
+                assertTrue(x >= room.getOriginX() && x < room.getOriginX() + room.getWidth()
+                        && y >= room.getOriginY() && y < room.getOriginY() + room.getHeight());
+                assertTrue(Math.hypot(x - start.getCenterX(), y - start.getCenterY()) >= 10);
+                for (int j = 0; j < i; j++) {
+                    assertTrue(Math.hypot(x - items.getX(j), y - items.getY(j)) >= 2.5,
+                            "seed " + seed + ", items " + j + " and " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void placementOnlyDependsOnSeedAndSettings() {
+        ItemPlacer placer = new ItemPlacer();
+        DungeonSnapshot dungeon = dungeon(200, 100, 10, 5, 42);
+        ItemLayout first = placer.place(dungeon);
+        ItemLayout second = placer.place(dungeon(200, 100, 10, 5, 42));
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.getX(i), second.getX(i));
+            assertEquals(first.getY(i), second.getY(i));
+            assertEquals(first.getRoom(i), second.getRoom(i));
+        }
+    }
+
+    @Test
+    void zeroDensityPlacesNothing() {
+        ItemPlacer placer = new ItemPlacer();
+        placer.setDensity(room -> 0);
+        assertEquals(0, placer.place(dungeon(60, 30, 4, 2, 1)).size());
+    }
+
+    @Test
+    void badSettingsAreRejected() {
+        ItemPlacer placer = new ItemPlacer();
+        assertThrows(IllegalArgumentException.class, () -> placer.setMinDistance(0.5));
+        assertThrows(IllegalArgumentException.class, () -> placer.setMinDistance(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> placer.setMinStartDistance(-1));
+        assertThrows(IllegalArgumentException.class, () -> placer.setDensity(null));
+    }
+
+    @Test
+    void queriesMatchBruteForce() {
+        ItemPlacer placer = new ItemPlacer();
+        placer.setMinDistance(1.5);
+        placer.setMinStartDistance(0);
+        placer.setDensity(room -> 0.3);
+        DungeonSnapshot dungeon = dungeon(300, 150, 15, 6, 7);
+        ItemLayout items = placer.place(dungeon);
+        assertTrue(items.size() > 500, "only " + items.size() + " items");
+
+        SplittableRandom random = new SplittableRandom(21);
+        for (int query = 0; query < 300; query++) {
+            double x = random.nextDouble(-20, 320);
+            double y = random.nextDouble(-20, 170);
+            double radius = random.nextDouble(0, 40);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                double dx = items.getX(i) - x;
+                double dy = items.getY(i) - y;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    expected.add(i);
+                }
+            }
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(),
+                    sorted(items.within(x, y, radius)), "radius " + radius + " around " + x + ", " + y);
+
+            int minX = random.nextInt(-10, 300);
+            int minY = random.nextInt(-10, 150);
+            int maxX = minX + random.nextInt(60);
+            int maxY = minY + random.nextInt(60);
+            List<Integer> inRect = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (items.getX(i) >= minX && items.getX(i) <= maxX
+                        && items.getY(i) >= minY && items.getY(i) <= maxY) {
+                    inRect.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            items.forEachInRect(minX, minY, maxX, maxY, found::add);
+            found.sort(null);
+            assertEquals(inRect, found);
+        }
+        assertThrows(IllegalArgumentException.class, () -> items.within(0, 0, -1));
+    }
+}
@@ -0,0 +1,71 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesAreWithinAFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 1e-9);
+        assertEquals(1000, histogram.getMaxMicros(), 1e-9);
+
+        double p50 = histogram.getP50Micros();
+        assertTrue(p50 >= 500 && p50 < 1000, "p50 " + p50);
+        double p99 = histogram.getP99Micros();
+        assertTrue(p99 >= 990 && p99 <= 1000, "p99 " + p99);
+        // Never reported above the longest duration recorded
+        assertEquals(1000, histogram.percentileMicros(1), 1e-9);
+    }
+
+    @Test
+    void edgeDurationsLandInRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getP50Micros());
+        assertEquals(0, histogram.getMeanMicros());
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(3, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(0.5));
+        assertEquals(Long.MAX_VALUE / 1000.0, histogram.getMaxMicros());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[8];
+            for (int t = 0; t < results.length; t++) {
+                results[t] = pool.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        histogram.record(i);
+                    }
+                });
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(800_000, histogram.getCount());
+        assertEquals(99_999 / 1000.0, histogram.getMaxMicros());
+    }
+}
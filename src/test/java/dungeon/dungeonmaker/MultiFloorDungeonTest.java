@@ -0,0 +1,115 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiFloorDungeonTest {
+
+    private static final DungeonParameters PARAMETERS = new DungeonParameters(60, 30);
+
+    private static byte[] expectedFloor(long seed, int floor) {
+        GridDungeon dungeon = PARAMETERS.newDungeon(Seeds.derive(seed, floor));
+        dungeon.generateConnected(BatchGenerator.DEFAULT_MAX_RETRIES);
+        return DungeonFormat.encode(dungeon.snapshot());
+    }
+
+    @Test
+    void floorsOnlyDependOnTheSeedAndDepth() {
+        try (MultiFloorDungeon dungeon = new MultiFloorDungeon(11L, PARAMETERS)) {
+            for (int floor = 0; floor < 5; floor++) {
+                DungeonFloor descended = floor == 0 ? dungeon.getCurrentFloor() : dungeon.descend();
+                assertEquals(floor, descended.getIndex());
+                assertArrayEquals(expectedFloor(11L, floor), DungeonFormat.encode(descended.getDungeon()));
+            }
+            assertEquals(3, dungeon.ascend().getIndex());
+            assertArrayEquals(expectedFloor(11L, 3), DungeonFormat.encode(dungeon.getCurrentFloor().getDungeon()));
+        }
+    }
+
+    @Test
+    void onlyFloorsAroundTheCurrentOneAreKept() {
+        try (MultiFloorDungeon dungeon = new MultiFloorDungeon(5L, PARAMETERS, 2)) {
+            dungeon.goTo(4);
+            // The current floor and two below; the floor above was never asked for
+            assertEquals(3, dungeon.getCachedFloorCount());
+
+            DungeonFloor far = dungeon.getFloor(20);
+            assertEquals(20, far.getIndex());
+            assertFalse(dungeon.isReady(20));
+            assertEquals(3, dungeon.getCachedFloorCount());
+            assertArrayEquals(expectedFloor(5L, 20), DungeonFormat.encode(far.getDungeon()));
+
+            dungeon.getFloor(3);
+            assertTrue(dungeon.isReady(3));
+            assertEquals(4, dungeon.getCachedFloorCount());
+            assertThrows(IllegalArgumentException.class, () -> dungeon.getFloor(-1));
+        }
+    }
+
+    @Test
+    void stairsDownAreInTheRoomFurthestFromTheStairsUp() {
+        try (MultiFloorDungeon dungeon = new MultiFloorDungeon(8L, PARAMETERS, 0)) {
+            DungeonFloor floor = dungeon.getCurrentFloor();
+            DungeonSnapshot snapshot = floor.getDungeon();
+            DungeonPaths paths = floor.getPaths();
+            assertEquals(snapshot.getStartingRoomIndex(), floor.getUpStairsRoom());
+            DungeonRoom down = snapshot.getRoom(floor.getDownStairsRoom());
+            int furthest = paths.distanceFromStart(down.getCenterX(), down.getCenterY());
+            for (int i = 0; i < snapshot.getRoomCount(); i++) {
+                DungeonRoom room = snapshot.getRoom(i);
+                if (room.containsRoom()) {
+                    assertTrue(paths.distanceFromStart(room.getCenterX(), room.getCenterY()) <= furthest);
+                }
+            }
+        }
+    }
+
+    @Test
+    void floorsSurviveMovesThatCancelTheirTasks() throws Exception {
+        long seed = 3L;
+        int depth = 12;
+        List<byte[]> expected = new ArrayList<>();
+        for (int floor = 0; floor < depth; floor++) {
+            expected.add(expectedFloor(seed, floor));
+        }
+
+        try (MultiFloorDungeon dungeon = new MultiFloorDungeon(seed, PARAMETERS, 3)) {
+            ExecutorService pool = Executors.newFixedThreadPool(6);
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (int t = 0; t < 6; t++) {
+                    long stream = t;
+                    boolean mover = t % 2 == 0;
+                    results.add(pool.submit(() -> {
+                        SplittableRandom random = new SplittableRandom(stream);
+                        for (int i = 0; i < 60; i++) {
+                            int floor = random.nextInt(depth);
+                            DungeonFloor found = mover ? dungeon.goTo(floor) : dungeon.getFloor(floor);
+                            assertEquals(floor, found.getIndex());
+                            assertArrayEquals(expected.get(floor), DungeonFormat.encode(found.getDungeon()));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                pool.shutdown();
+            }
+            assertTrue(dungeon.getCachedFloorCount() <= 5);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Parallel generation must give byte-for-byte the dungeon sequential
+ * generation does. Generation runs inside an eight-thread pool, so the
+ * parallel streams really do run concurrently even on a single core.
+ */
+class ParallelGenerationTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(8);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    private static byte[] generate(int[] layout, long seed, boolean parallel) throws Exception {
+        GridDungeon dungeon = new GridDungeon(layout[0], layout[1], layout[2], layout[3], seed);
+        dungeon.setParallel(parallel);
+        // Equal, default and steep costs
+        switch ((int) (seed % 3)) {
+            case 0 -> dungeon.setCorridorCosts(1, 1);
+            case 2 -> dungeon.setCorridorCosts(7, 2);
+            default -> { }
+        }
+        return pool.submit(() -> {
+            dungeon.generate();
+            return DungeonFormat.encode(dungeon.snapshot());
+        }).get();
+    }
+
+    @Test
+    void parallelMatchesSequentialFor300Seeds() throws Exception {
+        int[][] layouts = { { 60, 30, 4, 2 }, { 120, 60, 12, 6 }, { 300, 300, 30, 30 } };
+        int[] seeds = { 100, 150, 50 };
+        for (int i = 0; i < layouts.length; i++) {
+            for (long seed = 0; seed < seeds[i]; seed++) {
+                assertArrayEquals(generate(layouts[i], seed, false), generate(layouts[i], seed, true),
+                        layouts[i][0] + "x" + layouts[i][1] + " seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void parallelMatchesSequentialOnALargeMap() throws Exception {
+        int[] layout = { 1000, 1000, 50, 50 };
+        for (long seed = 0; seed < 3; seed++) {
+            assertArrayEquals(generate(layout, seed, false), generate(layout, seed, true), "seed " + seed);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReachabilityValidatorTest {
+
+    /**
+     * Plain breadth-first search over the open tiles, for comparison.
+     * @return the reachable tiles, flagged by index
+     */
+    private static boolean[] bfs(TileMap map, int startX, int startY) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        boolean[] seen = new boolean[width * height];
+        if (map.getType(startX, startY) == TileType.WALL) {
+            return seen;
+        }
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        seen[startY * width + startX] = true;
+        queue.add(new int[] { startX, startY });
+        int[][] steps = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+        while (!queue.isEmpty()) {
+            int[] tile = queue.poll();
+            for (int[] step : steps) {
+                int x = tile[0] + step[0];
+                int y = tile[1] + step[1];
+                if (x >= 0 && y >= 0 && x < width && y < height
+                        && !seen[y * width + x] && map.getType(x, y) != TileType.WALL) {
+                    seen[y * width + x] = true;
+                    queue.add(new int[] { x, y });
+                }
+            }
+        }
+        return seen;
+    }
+
+    private static void assertMatchesBfs(ReachabilityValidator validator, GridDungeon dungeon) {
+        TileMap map = dungeon.getTileMap();
+        DungeonRoom[] rooms = dungeon.getDungeonRooms();
+        DungeonRoom start = rooms[dungeon.getStartingRoomIndex()];
+        boolean[] seen = bfs(map, start.getCenterX(), start.getCenterY());
+
+        long reachable = 0;
+        for (boolean tile : seen) {
+            reachable += tile ? 1 : 0;
+        }
+        long open = 0;
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < map.getWidth(); x++) {
+                open += map.getType(x, y) != TileType.WALL ? 1 : 0;
+            }
+        }
+        int[] unreachable = new int[rooms.length];
+        int count = 0;
+        for (int i = 0; i < rooms.length; i++) {
+            if (rooms[i].containsRoom() && !seen[rooms[i].getCenterY() * map.getWidth() + rooms[i].getCenterX()]) {
+                unreachable[count++] = i;
+            }
+        }
+
+        Reachability result = validator.validate(dungeon);
+        assertEquals(reachable, result.getReachableTiles(), "seed " + dungeon.getSeed());
+        assertArrayEquals(Arrays.copyOf(unreachable, count), result.getUnreachableRooms(),
+                "seed " + dungeon.getSeed());
+        assertEquals(open, result.getOpenTiles());
+        assertEquals(open - reachable, result.getStrandedTiles());
+        assertEquals((double) open / (map.getWidth() * map.getHeight()), result.getOpenRatio(), 1e-12);
+    }
+
+    @Test
+    void matchesBfsOnGeneratedAndDamagedDungeons() {
+        // One validator throughout, so its reused buffers are exercised across sizes
+        ReachabilityValidator validator = new ReachabilityValidator();
+        // Rows of exactly one and two words end on a word boundary
+        int[][] layouts = { { 60, 30, 4, 2 }, { 130, 70, 10, 5 }, { 67, 131, 3, 9 },
+                { 64, 40, 4, 2 }, { 128, 20, 8, 1 } };
+        SplittableRandom random = new SplittableRandom(1);
+        for (int seed = 0; seed < 600; seed++) {
+            int[] layout = layouts[seed % layouts.length];
+            GridDungeon dungeon = new GridDungeon(layout[0], layout[1], layout[2], layout[3], seed);
+            dungeon.generate();
+            if (seed % 2 == 1) {
+                // Punch walls into half of them, and open a few stray tiles
+                TileMap map = dungeon.getTileMap();
+                int punches = random.nextInt(1, map.getWidth() * map.getHeight() / 20);
+                for (int i = 0; i < punches; i++) {
+                    TileType type = random.nextInt(4) == 0 ? TileType.FLOOR : TileType.WALL;
+                    map.setType(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()), type);
+                }
+            }
+            assertMatchesBfs(validator, dungeon);
+        }
+    }
+
+    @Test
+    void generatedDungeonsAreConnected() {
+        for (int seed = 0; seed < 100; seed++) {
+            GridDungeon dungeon = new GridDungeon(120, 60, 12, 6, seed);
+            dungeon.generate();
+            assertTrue(dungeon.validate().isConnected(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void spansRunToTheEdgesOfWordAlignedRows() {
+        ReachabilityValidator validator = new ReachabilityValidator();
+        for (int width : new int[] { 1, 63, 64, 65, 128, 200 }) {
+            TileMap map = new TileMap(width, 5);
+            map.fill(TileType.FLOOR);
+            // A wall across the middle row, with one gap at the far end
+            map.fillRect(0, 2, width, 1, TileType.WALL);
+            map.setType(width - 1, 2, TileType.FLOOR);
+            DungeonRoom start = new DungeonRoom();
+            start.setRoomCenter(0, 0);
+            DungeonRoom end = new DungeonRoom();
+            end.setRoomCenter(0, 4);
+            end.setContainsRoom(true);
+            Reachability result = validator.validate(map, new DungeonRoom[] { start, end }, 0);
+            assertEquals(4L * width + 1, result.getReachableTiles(), "width " + width);
+            assertTrue(result.isConnected());
+
+            map.setType(width - 1, 2, TileType.WALL);
+            result = validator.validate(map, new DungeonRoom[] { start, end }, 0);
+            assertEquals(2L * width, result.getReachableTiles(), "width " + width);
+            assertEquals(2L * width, result.getStrandedTiles());
+            assertArrayEquals(new int[] { 1 }, result.getUnreachableRooms());
+        }
+    }
+
+    @Test
+    void walledInStartReachesNothing() {
+        GridDungeon dungeon = new GridDungeon(60, 30, 1L);
+        dungeon.generate();
+        DungeonRoom start = dungeon.getDungeonRooms()[dungeon.getStartingRoomIndex()];
+        dungeon.getTileMap().setType(start.getCenterX(), start.getCenterY(), TileType.WALL);
+        Reachability result = dungeon.validate();
+        assertEquals(0, result.getReachableTiles());
+        assertFalse(result.isConnected());
+    }
+
+    @Test
+    void retriesUntilConnected() {
+        GridDungeon dungeon = new GridDungeon(60, 30, 5L);
+        assertTrue(dungeon.generateConnected(3).isConnected());
+    }
+}
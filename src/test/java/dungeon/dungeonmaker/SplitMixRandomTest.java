@@ -0,0 +1,40 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SplitMixRandomTest {
+
+    @Test
+    void drawsWhatSplittableRandomDraws() {
+        for (long seed : new long[] { 0, 1, -7, 0x123456789abcdefL }) {
+            SplittableRandom expected = new SplittableRandom(seed);
+            SplitMixRandom random = new SplitMixRandom(seed);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(expected.nextLong(), random.nextLong());
+                assertEquals(expected.nextInt(), random.nextInt());
+                // Bounds just over a power of two reject the most draws
+                assertEquals(expected.nextInt(i + 1), random.nextInt(i + 1));
+                assertEquals(expected.nextInt((1 << 30) + 1), random.nextInt((1 << 30) + 1));
+                assertEquals(expected.nextInt(-i, 5), random.nextInt(-i, 5));
+            }
+        }
+    }
+
+    @Test
+    void copiesDrawIndependently() {
+        SplitMixRandom random = new SplitMixRandom(42);
+        random.nextLong();
+        SplitMixRandom copy = random.copy();
+        long[] drawn = new long[100];
+        for (int i = 0; i < drawn.length; i++) {
+            drawn[i] = copy.nextLong();
+        }
+        for (long value : drawn) {
+            assertEquals(value, random.nextLong());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TileLayersTest {
+
+    // Widths either side of the word boundaries
+    private static final int[] WIDTHS = { 1, 5, 63, 64, 65, 127, 128, 130 };
+    private static final TileType[] TYPES = TileType.values();
+
+    private static TileMap randomMap(SplittableRandom random, int width, int height) {
+        TileMap map = new TileMap(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                map.setType(x, y, TYPES[random.nextInt(TYPES.length)]);
+            }
+        }
+        return map;
+    }
+
+    private static void assertSameTiles(TileGrid expected, TileLayers actual) {
+        long open = 0;
+        long[] counts = new long[TYPES.length];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                TileType type = expected.getType(x, y);
+                assertEquals(type, actual.getType(x, y), "tile " + x + ", " + y);
+                counts[type.ordinal()]++;
+                open += type != TileType.WALL ? 1 : 0;
+            }
+        }
+        for (TileType type : TYPES) {
+            assertEquals(counts[type.ordinal()], actual.count(type), type.toString());
+        }
+        assertEquals(open, actual.countOpen());
+        assertEquals((double) open / (expected.getWidth() * expected.getHeight()), actual.getOpenRatio(), 1e-12);
+    }
+
+    @Test
+    void copiesMatchTheMap() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int width : WIDTHS) {
+            TileMap map = randomMap(random, width, 7);
+            TileLayers layers = TileLayers.of(map);
+            assertSameTiles(map, layers);
+
+            // Through the TileGrid path as well as the packed one
+            TileLayers copy = new TileLayers(width, 7);
+            copy.copyFrom(layers);
+            assertSameTiles(map, copy);
+
+            TileMap back = new TileMap(width, 7);
+            layers.copyTo(back);
+            assertSameTiles(back, layers);
+        }
+    }
+
+    @Test
+    void fillsAndSetsMatchTheMap() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int width : WIDTHS) {
+            TileMap map = new TileMap(width, 9);
+            TileLayers layers = new TileLayers(width, 9);
+            for (int i = 0; i < 200; i++) {
+                TileType type = TYPES[random.nextInt(TYPES.length)];
+                int x = random.nextInt(width);
+                int y = random.nextInt(9);
+                if (random.nextBoolean()) {
+                    int w = random.nextInt(width - x + 1);
+                    int h = random.nextInt(9 - y + 1);
+                    map.fillRect(x, y, w, h, type);
+                    layers.fillRect(x, y, w, h, type);
+                } else {
+                    map.setType(x, y, type);
+                    layers.setType(x, y, type);
+                }
+            }
+            assertSameTiles(map, layers);
+            layers.fill(TileType.FLOOR);
+            assertEquals((long) width * 9, layers.count(TileType.FLOOR));
+            assertEquals(1.0, layers.getOpenRatio());
+        }
+    }
+
+    @Test
+    void combiningMapsMatchesTileByTile() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int width : WIDTHS) {
+            TileMap a = randomMap(random, width, 6);
+            TileMap b = randomMap(random, width, 6);
+            TileLayers layersA = TileLayers.of(a);
+            TileLayers layersB = TileLayers.of(b);
+
+            TileMap union = new TileMap(a);
+            TileMap intersection = new TileMap(a);
+            TileMap carved = new TileMap(a);
+            long openOverlap = 0;
+            long[] overlap = new long[TYPES.length];
+            for (int y = 0; y < 6; y++) {
+                for (int x = 0; x < width; x++) {
+                    TileType typeA = a.getType(x, y);
+                    TileType typeB = b.getType(x, y);
+                    boolean openA = typeA != TileType.WALL;
+                    boolean openB = typeB != TileType.WALL;
+                    if (!openA && openB) {
+                        union.setType(x, y, typeB);
+                        carved.setType(x, y, TileType.FLOOR);
+                    }
+                    if (openA && !openB) {
+                        intersection.setType(x, y, TileType.WALL);
+                    }
+                    openOverlap += openA && openB ? 1 : 0;
+                    if (typeA == typeB) {
+                        overlap[typeA.ordinal()]++;
+                    }
+                }
+            }
+
+            assertEquals(openOverlap, layersA.countOpenOverlap(layersB));
+            for (TileType type : TYPES) {
+                assertEquals(overlap[type.ordinal()], layersA.countOverlap(layersB, type));
+            }
+            TileLayers unionLayers = TileLayers.of(a);
+            unionLayers.union(layersB);
+            assertSameTiles(union, unionLayers);
+            TileLayers intersectionLayers = TileLayers.of(a);
+            intersectionLayers.intersect(layersB);
+            assertSameTiles(intersection, intersectionLayers);
+            assertEquals(openOverlap, intersectionLayers.countOpen());
+            TileLayers carvedLayers = TileLayers.of(a);
+            carvedLayers.carve(layersB);
+            assertSameTiles(carved, carvedLayers);
+        }
+    }
+
+    @Test
+    void generatedDungeonStatisticsMatchTheValidator() {
+        for (long seed = 0; seed < 20; seed++) {
+            GridDungeon dungeon = new GridDungeon(120, 60, 8, 4, seed);
+            dungeon.generate();
+            TileLayers layers = TileLayers.of(dungeon.getTileMap());
+            assertSameTiles(dungeon.getTileMap(), layers);
+            Reachability reachability = new ReachabilityValidator()
+                    .validate(layers, dungeon.getDungeonRooms(), dungeon.getStartingRoomIndex());
+            assertEquals(layers.countOpen(), reachability.getOpenTiles());
+            assertEquals(dungeon.validate().getReachableTiles(), reachability.getReachableTiles());
+        }
+    }
+
+    @Test
+    void outsideTheMapThrows() {
+        TileLayers layers = new TileLayers(64, 3);
+        assertThrows(IndexOutOfBoundsException.class, () -> layers.getType(64, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> layers.setType(-1, 0, TileType.FLOOR));
+        assertThrows(IndexOutOfBoundsException.class, () -> layers.fillRect(60, 0, 5, 1, TileType.FLOOR));
+        assertThrows(IndexOutOfBoundsException.class, () -> layers.fillRect(0, 2, 1, 2, TileType.FLOOR));
+        assertThrows(IllegalArgumentException.class, () -> layers.union(new TileLayers(65, 3)));
+        assertThrows(IllegalArgumentException.class, () -> new TileLayers(0, 3));
+        assertEquals(0, layers.countOpen());
+    }
+}
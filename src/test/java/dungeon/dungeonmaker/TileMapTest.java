@@ -0,0 +1,51 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TileMapTest {
+
+    @Test
+    void newMapIsAllWalls() {
+        TileMap map = new TileMap(4, 3);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(TileType.WALL, map.getType(x, y));
+            }
+        }
+    }
+
+    @Test
+    void tileOutsideMapThrowsInsteadOfWrapping() {
+        TileMap map = new TileMap(4, 3);
+        assertThrows(IndexOutOfBoundsException.class, () -> map.getType(4, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.getType(-1, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.getType(0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.setType(4, 0, TileType.FLOOR));
+        assertEquals(TileType.WALL, map.getType(0, 1));
+    }
+
+    @Test
+    void rectOutsideMapThrows() {
+        TileMap map = new TileMap(4, 3);
+        assertThrows(IndexOutOfBoundsException.class, () -> map.fillRect(2, 0, 3, 1, TileType.FLOOR));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.fillRect(0, 2, 1, 2, TileType.FLOOR));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.copyRect(-1, 0, 2, 2));
+        assertEquals(TileType.WALL, map.getType(0, 1));
+    }
+
+    @Test
+    void copyRectCopiesTheRectangle() {
+        TileMap map = new TileMap(4, 3);
+        map.fillRect(1, 1, 2, 2, TileType.FLOOR);
+        TileMap copy = map.copyRect(1, 0, 3, 2);
+        assertEquals(3, copy.getWidth());
+        assertEquals(2, copy.getHeight());
+        assertEquals(TileType.WALL, copy.getType(0, 0));
+        assertEquals(TileType.FLOOR, copy.getType(0, 1));
+        assertEquals(TileType.FLOOR, copy.getType(1, 1));
+        assertEquals(TileType.WALL, copy.getType(2, 1));
+    }
+}
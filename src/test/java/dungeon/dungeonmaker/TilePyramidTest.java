@@ -0,0 +1,107 @@
+package dungeon.dungeonmaker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TilePyramidTest {
+
+    private static int bruteMax(TileGrid grid, int minX, int minY, int maxX, int maxY) {
+        int best = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                best = Math.max(best, grid.getType(x, y).ordinal());
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The rectangle grown out to whole cells of the level maxOrdinal reads.
+     */
+    private static int cellMax(TileGrid grid, TilePyramid pyramid,
+                               int minX, int minY, int maxX, int maxY) {
+        int span = Math.min(maxX - minX, maxY - minY) + 1;
+        int k = Math.min(pyramid.getLevelCount() - 1, 31 - Integer.numberOfLeadingZeros(span));
+        return bruteMax(grid, minX >> k << k, minY >> k << k,
+                Math.min(grid.getWidth() - 1, ((maxX >> k) + 1 << k) - 1),
+                Math.min(grid.getHeight() - 1, ((maxY >> k) + 1 << k) - 1));
+    }
+
+    @Test
+    void levelsHalveDownToOneCell() {
+        TilePyramid pyramid = new TilePyramid(new TileMap(37, 5));
+        assertEquals(7, pyramid.getLevelCount());
+        assertEquals(19, pyramid.getWidth(1));
+        assertEquals(3, pyramid.getHeight(1));
+        assertEquals(1, pyramid.getWidth(6));
+        assertEquals(1, pyramid.getHeight(6));
+
+        assertEquals(1, new TilePyramid(new TileMap(1, 1)).getLevelCount());
+        assertEquals(2, new TilePyramid(new TileMap(2, 1)).getLevelCount());
+    }
+
+    @Test
+    void singleOpenTileSurvivesEveryLevel() {
+        TileMap map = new TileMap(301, 157);
+        map.setType(300, 156, TileType.FLOOR);
+        TilePyramid pyramid = new TilePyramid(map);
+        for (int k = 0; k < pyramid.getLevelCount(); k++) {
+            int open = 0;
+            for (int y = 0; y < pyramid.getHeight(k); y++) {
+                for (int x = 0; x < pyramid.getWidth(k); x++) {
+                    open += pyramid.ordinalAt(k, x, y);
+                }
+            }
+            assertEquals(TileType.FLOOR.ordinal(), open, "level " + k);
+        }
+        assertEquals(TileType.FLOOR.ordinal(), pyramid.maxOrdinal(0, 0, 300, 156));
+        assertEquals(TileType.FLOOR.ordinal(), pyramid.maxOrdinal(300, 156, 300, 156));
+        assertEquals(TileType.WALL.ordinal(), pyramid.maxOrdinal(299, 156, 299, 156));
+        assertEquals(TileType.WALL.ordinal(), pyramid.maxOrdinal(0, 0, 255, 127));
+    }
+
+    @Test
+    void maxOrdinalMatchesCoveringCells() {
+        SplittableRandom random = new SplittableRandom(19);
+        for (int round = 0; round < 20; round++) {
+            TileMap map = new TileMap(1 + random.nextInt(200), 1 + random.nextInt(120));
+            // Sparse open tiles, as thin corridors are what a sampled overview loses
+            for (int i = 0; i < map.getWidth() * map.getHeight() / 50; i++) {
+                TileType type = random.nextInt(4) == 0 ? TileType.CENTER : TileType.FLOOR;
+                map.setType(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()), type);
+            }
+            TilePyramid pyramid = new TilePyramid(map);
+            for (int query = 0; query < 500; query++) {
+                int minX = random.nextInt(map.getWidth());
+                int minY = random.nextInt(map.getHeight());
+                int maxX = minX + random.nextInt(map.getWidth() - minX);
+                int maxY = minY + random.nextInt(map.getHeight() - minY);
+                int found = pyramid.maxOrdinal(minX, minY, maxX, maxY);
+                String rect = "(" + minX + ", " + minY + ")-(" + maxX + ", " + maxY + ")";
+                assertEquals(cellMax(map, pyramid, minX, minY, maxX, maxY), found, rect);
+                assertTrue(found >= bruteMax(map, minX, minY, maxX, maxY), rect);
+            }
+        }
+    }
+
+    @Test
+    void generatedCorridorsStayVisibleWhenZoomedOut() {
+        GridDungeon dungeon = new GridDungeon(400, 200, 8, 4, 20);
+        dungeon.generate();
+        DungeonSnapshot snapshot = dungeon.snapshot();
+        TilePyramid pyramid = new TilePyramid(snapshot);
+        // 8x8-tile pixels, as at a zoom of 1/8
+        for (int y = 0; y < snapshot.getHeight(); y += 8) {
+            for (int x = 0; x < snapshot.getWidth(); x += 8) {
+                int maxX = Math.min(snapshot.getWidth() - 1, x + 7);
+                int maxY = Math.min(snapshot.getHeight() - 1, y + 7);
+                // Pixels aligned with the cells see exactly their own tiles
+                assertEquals(bruteMax(snapshot, x, y, maxX, maxY), pyramid.maxOrdinal(x, y, maxX, maxY));
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package dungeon.dungeonmaker.headless;
+
+import dungeon.dungeonmaker.DungeonSnapshot;
+import dungeon.dungeonmaker.GridDungeon;
+import dungeon.dungeonmaker.TileGrid;
+import dungeon.dungeonmaker.TileMap;
+import dungeon.dungeonmaker.TileType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The PNG is decoded by hand, checking every chunk's CRC, so the image
+ * is read back the way any PNG reader would.
+ */
+class DungeonEncodingTest {
+
+    private static DungeonSnapshot generate(long seed) {
+        GridDungeon dungeon = new GridDungeon(60, 30, 4, 2, seed);
+        dungeon.generate();
+        return dungeon.snapshot();
+    }
+
+    /**
+     * @return the palette index of every pixel, row by row, after the width and height
+     */
+    private static int[] decodePng(byte[] png) throws Exception {
+        byte[] signature = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+        assertArrayEquals(signature, Arrays.copyOf(png, 8));
+        ByteBuffer buffer = ByteBuffer.wrap(png, 8, png.length - 8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        int width = 0;
+        int height = 0;
+        String type;
+        do {
+            int length = buffer.getInt();
+            byte[] typeBytes = new byte[4];
+            buffer.get(typeBytes);
+            byte[] data = new byte[length];
+            buffer.get(data);
+            CRC32 crc = new CRC32();
+            crc.update(typeBytes);
+            crc.update(data);
+            assertEquals((int) crc.getValue(), buffer.getInt());
+            type = new String(typeBytes, StandardCharsets.US_ASCII);
+            switch (type) {
+                case "IHDR" -> {
+                    ByteBuffer header = ByteBuffer.wrap(data);
+                    width = header.getInt();
+                    height = header.getInt();
+                    // 8 bit palette indices
+                    assertEquals(8, header.get());
+                    assertEquals(3, header.get());
+                }
+                case "PLTE" -> assertEquals(TileType.values().length * 3, length);
+                case "IDAT" -> compressed.write(data);
+                default -> { }
+            }
+        } while (!type.equals("IEND"));
+        assertEquals(0, buffer.remaining());
+
+        byte[] raw = new byte[height * (width + 1)];
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed.toByteArray());
+        assertEquals(raw.length, inflater.inflate(raw));
+        assertTrue(inflater.finished());
+        inflater.end();
+
+        int[] pixels = new int[2 + width * height];
+        pixels[0] = width;
+        pixels[1] = height;
+        for (int y = 0; y < height; y++) {
+            // No filter on any scanline
+            assertEquals(0, raw[y * (width + 1)]);
+            for (int x = 0; x < width; x++) {
+                pixels[2 + y * width + x] = raw[y * (width + 1) + 1 + x];
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    void pngShowsEveryTileAtTheGivenScale() throws Exception {
+        DungeonSnapshot dungeon = generate(3);
+        for (int scale : new int[] { 1, 3 }) {
+            int[] pixels = decodePng(DungeonPng.encode(dungeon, scale));
+            int width = pixels[0];
+            assertEquals(dungeon.getWidth() * scale, width);
+            assertEquals(dungeon.getHeight() * scale, pixels[1]);
+            for (int y = 0; y < pixels[1]; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(dungeon.getType(x / scale, y / scale).ordinal(), pixels[2 + y * width + x]);
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> DungeonPng.encode(dungeon, 0));
+        assertThrows(IllegalArgumentException.class, () -> DungeonPng.encode(dungeon, DungeonPng.MAX_SCALE + 1));
+    }
+
+    @Test
+    void imagesTooLargeAreRejectedBeforeDrawing() {
+        // Only the size is read before the image is checked
+        TileGrid huge = new TileGrid() {
+            public int getWidth() { return Integer.MAX_VALUE / 2; }
+            public int getHeight() { return 3; }
+            public TileType getType(int x, int y) { throw new AssertionError("drawn at " + x + "," + y); }
+        };
+        assertThrows(IllegalArgumentException.class, () -> DungeonPng.encode(huge, 1));
+        assertThrows(IllegalArgumentException.class, () -> DungeonPng.encode(huge, DungeonPng.MAX_SCALE));
+
+        // The scanlines of a 16384x16384 image, filter bytes included, are just over the limit
+        TileMap map = new TileMap(2048, 2048);
+        assertThrows(IllegalArgumentException.class, () -> DungeonPng.encode(map, 8));
+        DungeonPng.checkSize(2048, 2048, 7);
+    }
+
+    @Test
+    void paletteIsTheRendererColors() throws Exception {
+        byte[] png = DungeonPng.encode(generate(1), 1);
+        int palette = 8 + 8 + 13 + 4;
+        assertEquals(TileType.values().length * 3, ByteBuffer.wrap(png, palette, 4).getInt());
+        for (TileType type : TileType.values()) {
+            int offset = palette + 8 + type.ordinal() * 3;
+            int rgb = (png[offset] & 0xff) << 16 | (png[offset + 1] & 0xff) << 8 | png[offset + 2] & 0xff;
+            assertEquals(type.getRgb(), rgb, type.name());
+        }
+    }
+
+    @Test
+    void jsonRowsMatchTheTiles() {
+        DungeonSnapshot dungeon = generate(8);
+        String json = DungeonJson.encode(dungeon);
+        assertTrue(json.startsWith("{\"seed\":8,\"width\":60,\"height\":30,\"sectionsX\":4,\"sectionsY\":2,"));
+        assertTrue(json.endsWith("\"]}"));
+        assertEquals(dungeon.getRoomCount(), json.split("\"section\":", -1).length - 1);
+
+        String rows = json.substring(json.indexOf("\"rows\":[") + 8, json.length() - 2);
+        String[] lines = rows.split(",");
+        assertEquals(dungeon.getHeight(), lines.length);
+        for (int y = 0; y < lines.length; y++) {
+            StringBuilder expected = new StringBuilder("\"");
+            for (int x = 0; x < dungeon.getWidth(); x++) {
+                expected.append(dungeon.getType(x, y).getSymbol());
+            }
+            assertEquals(expected.append('"').toString(), lines[y]);
+        }
+    }
+}